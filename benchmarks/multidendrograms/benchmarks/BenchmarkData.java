@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+import java.util.logging.Level;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.clusterings.HierarchicalClustering;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.data.DataFile;
+import multidendrograms.data.ExternalData;
+import multidendrograms.direct.DirectClustering;
+import multidendrograms.initial.LogManager;
+import multidendrograms.types.MethodType;
+import multidendrograms.types.ProximityType;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Sample and synthetic data for the benchmarks
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+public class BenchmarkData {
+
+	public static ExternalData readFile(String fileName) throws Exception {
+		LogManager.setLevel(Level.OFF);
+		return new ExternalData(new DataFile(fileName));
+	}
+
+	// Random proximities in [0, 1) with the given number of decimals. With 
+	// ties, proximities only take 100 different values.
+	public static SymmetricMatrix randomMatrix(int numElements, int decimals, 
+			boolean withTies, long seed) {
+		Random random = new Random(seed);
+		double factor = Math.pow(10, decimals);
+		double[] lowerTriangle = 
+				new double[numElements * (numElements - 1) / 2];
+		for (int n = 0; n < lowerTriangle.length; n ++) {
+			double value = withTies ? 
+					(double)random.nextInt(100) / 100.0 : random.nextDouble();
+			lowerTriangle[n] = Math.round(value * factor) / factor;
+		}
+		return new SymmetricMatrix(lowerTriangle);
+	}
+
+	// Text formats of the data files
+	public enum TxtFormat {
+		LIST, MATRIX, TRIANGULAR
+	}
+
+	public static void writeTxt(SymmetricMatrix matrix, String[] labels, 
+			TxtFormat format, File file) throws IOException {
+		PrintWriter printWriter = new PrintWriter(new FileWriter(file));
+		int numElements = matrix.numberOfRows();
+		for (int i = 0; i < numElements; i ++) {
+			StringBuilder line = new StringBuilder();
+			if (format.equals(TxtFormat.LIST)) {
+				for (int j = i + 1; j < numElements; j ++) {
+					printWriter.println(labels[i] + " " + labels[j] + " " + 
+							matrix.getElement(i, j));
+				}
+			} else {
+				int numColumns = format.equals(TxtFormat.MATRIX) ? 
+						numElements : i + 1;
+				for (int j = 0; j < numColumns; j ++) {
+					if (j > 0) {
+						line.append('\t');
+					}
+					line.append((i == j) ? 0.0 : matrix.getElement(i, j));
+				}
+				printWriter.println(line);
+			}
+		}
+		printWriter.close();
+	}
+
+	// Parameters of Versatile Linkage and Beta Flexible different from the
+	// particular cases with their own method type
+	public static double methodParameter(MethodType method) {
+		if (method.equals(MethodType.VERSATILE_LINKAGE)) {
+			return 0.5;
+		} else if (method.equals(MethodType.BETA_FLEXIBLE)) {
+			return -0.25;
+		} else {
+			return 0.0;
+		}
+	}
+
+	public static HierarchicalClustering build(MethodType method, 
+			SymmetricMatrix proximityMatrix, String[] labels, int precision, 
+			EngineType engine) {
+		HierarchicalClustering clustering = DirectClustering.newClustering(
+				method, proximityMatrix, labels, ProximityType.DISTANCE, 
+				precision, false, methodParameter(method), engine);
+		clustering.build();
+		return clustering;
+	}
+
+	public static String[] labels(int numElements) {
+		String[] labels = new String[numElements];
+		for (int n = 0; n < numElements; n ++) {
+			labels[n] = "e" + (n + 1);
+		}
+		return labels;
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.FeatureDistances;
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.types.MethodType;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Centroid and Ward clustering of random feature vectors with Euclidean 
+ * distances, from the proximities or from the centroids of the clusters. 
+ * Integer features produce many ties
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class CentroidSearchBenchmark {
+
+	@Param({"2000", "10000"})
+	public int numElements;
+
+	@Param({"10"})
+	public int numFeatures;
+
+	@Param({"false", "true"})
+	public boolean withTies;
+
+	@Param({"CENTROID", "WARD"})
+	public MethodType method;
+
+	@Param({"VARIABLE_GROUP", "CENTROID_SEARCH"})
+	public EngineType engine;
+
+	private SymmetricMatrix distanceMatrix;
+	private String[] labels;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(1);
+		double[][] features = new double[this.numElements][this.numFeatures];
+		for (int i = 0; i < this.numElements; i ++) {
+			for (int f = 0; f < this.numFeatures; f ++) {
+				features[i][f] = this.withTies ? random.nextInt(3) : 
+						Math.round(1000.0 * random.nextGaussian()) / 1000.0;
+			}
+		}
+		this.distanceMatrix = new FeatureDistances(features, MetricType.EUCLIDEAN, 
+				StorageType.DOUBLE, null).getDistanceMatrix();
+		this.labels = BenchmarkData.labels(this.numElements);
+	}
+
+	@Benchmark
+	public Dendrogram build() {
+		return BenchmarkData.build(this.method, this.distanceMatrix, this.labels, 
+				this.distanceMatrix.getPrecision(), this.engine).getRoot();
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.types.MethodType;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Whole clustering of synthetic matrices for every method, with proximities
+ * of three decimals and with only 100 different proximities, which produce
+ * many ties. The engine can be changed with -p engine=...
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class ClusteringBenchmark {
+
+	@Param({"500", "2000", "10000"})
+	public int numElements;
+
+	@Param({"false", "true"})
+	public boolean withTies;
+
+	@Param({"VERSATILE_LINKAGE", "SINGLE_LINKAGE", "COMPLETE_LINKAGE", 
+		"ARITHMETIC_LINKAGE", "GEOMETRIC_LINKAGE", "HARMONIC_LINKAGE", 
+		"CENTROID", "WARD", "BETA_FLEXIBLE"})
+	public MethodType method;
+
+	@Param({"VARIABLE_GROUP", "PRIORITY_QUEUE"})
+	public EngineType engine;
+
+	private SymmetricMatrix proximityMatrix;
+	private String[] labels;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.proximityMatrix = BenchmarkData.randomMatrix(this.numElements, 3, 
+				this.withTies, 1);
+		this.labels = BenchmarkData.labels(this.numElements);
+	}
+
+	@Benchmark
+	public Dendrogram build() {
+		return BenchmarkData.build(this.method, this.proximityMatrix, 
+				this.labels, 3, this.engine).getRoot();
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.clusterings.HierarchicalClustering;
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.core.utils.SmartAxis;
+import multidendrograms.data.ExternalData;
+import multidendrograms.definitions.Config;
+import multidendrograms.definitions.SettingsInfo;
+import multidendrograms.dendrogram.DendrogramPlot;
+import multidendrograms.dendrogram.ToJson;
+import multidendrograms.dendrogram.ToNewick;
+import multidendrograms.dendrogram.ToTxt;
+import multidendrograms.dendrogram.eps.EpsExporter;
+import multidendrograms.forms.children.DendrogramPanel;
+import multidendrograms.initial.InitialProperties;
+import multidendrograms.initial.Language;
+import multidendrograms.types.MethodType;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Export of the Arithmetic Linkage dendrogram of a synthetic matrix to the
+ * text, Newick, JSON and EPS formats. The EPS exporter draws the figures of
+ * a dendrogram panel, which is not shown, so it also runs headless.
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ExportBenchmark {
+
+	private static final int PANEL_WIDTH = 1200;
+	private static final int PANEL_HEIGHT = 800;
+
+	@Param({"500", "2000"})
+	public int numElements;
+
+	@Param({"false", "true"})
+	public boolean withTies;
+
+	private Dendrogram root;
+	private Config cfg;
+	private DendrogramPanel dendroPanel;
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		// The plots take the names of the elements from the loaded data
+		SymmetricMatrix proximityMatrix = BenchmarkData.randomMatrix(
+				this.numElements, 3, this.withTies, 1);
+		this.file = File.createTempFile("md-export", ".txt");
+		BenchmarkData.writeTxt(proximityMatrix, 
+				BenchmarkData.labels(this.numElements), 
+				BenchmarkData.TxtFormat.MATRIX, this.file);
+		ExternalData externalData = BenchmarkData.readFile(this.file.getPath());
+		HierarchicalClustering clustering = BenchmarkData.build(
+				MethodType.ARITHMETIC_LINKAGE, 
+				externalData.getProximityMatrix(), externalData.getNames(), 3, 
+				EngineType.VARIABLE_GROUP);
+		this.root = clustering.getRoot();
+		// Settings of the graphic interface with the axis adjusted to the tree,
+		// and the default language for the labels of the panel
+		new Language(InitialProperties.getLanguage());
+		SettingsInfo settings = new SettingsInfo();
+		settings.setPrecision(3);
+		settings.setNodeNameFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
+		settings.setNodeNameColor(Color.BLACK);
+		settings.setAxisLabelFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
+		SmartAxis smartAxis = new SmartAxis(this.root, true);
+		settings.setAxisMinValue(smartAxis.smartMin());
+		settings.setAxisMaxValue(smartAxis.smartMax());
+		settings.setAxisIncrement(smartAxis.smartTicksSize());
+		settings.setAxisLabelDecimals(3);
+		this.cfg = new Config(settings);
+		this.cfg.setExternalData(externalData);
+		this.cfg.setHierarchicalClustering(clustering);
+		DendrogramPlot dendroPlot = new DendrogramPlot(this.root, this.cfg);
+		this.dendroPanel = new DendrogramPanel(null);
+		this.dendroPanel.setSize(PANEL_WIDTH, PANEL_HEIGHT);
+		this.dendroPanel.setNodesList(dendroPlot.getNodesList());
+		this.dendroPanel.setLinesList(dendroPlot.getLinesList());
+		this.dendroPanel.setBandsList(dendroPlot.getBandsList());
+		this.dendroPanel.setConfig(this.cfg);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.file.delete();
+	}
+
+	@Benchmark
+	public void toTxt() throws IOException {
+		new ToTxt(this.root).saveAsTxt(this.file.getPath());
+	}
+
+	@Benchmark
+	public void toNewick() throws IOException {
+		new ToNewick(this.root, true).saveAsNewick(this.file.getPath());
+	}
+
+	@Benchmark
+	public void toJson() throws IOException {
+		new ToJson(this.root, true).saveAsJson(this.file.getPath());
+	}
+
+	@Benchmark
+	public void toEps() {
+		new EpsExporter(this.cfg, this.dendroPanel, this.file.getPath());
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import multidendrograms.core.definitions.FeatureDistances;
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.core.definitions.SymmetricMatrix;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Calculation of the distance matrix of random feature vectors, sequentially
+ * and in parallel, stored or only scanned for its range with lazy storage
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class FeatureDistancesBenchmark {
+
+	@Param({"2000", "10000"})
+	public int numElements;
+
+	@Param({"10", "100"})
+	public int numFeatures;
+
+	@Param({"EUCLIDEAN", "MANHATTAN", "CORRELATION"})
+	public MetricType metric;
+
+	@Param({"1", "4"})
+	public int numThreads;
+
+	@Param({"DOUBLE", "LAZY"})
+	public StorageType storage;
+
+	private double[][] features;
+	private ForkJoinPool pool;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		Random random = new Random(1);
+		this.features = new double[this.numElements][this.numFeatures];
+		for (int i = 0; i < this.numElements; i ++) {
+			for (int f = 0; f < this.numFeatures; f ++) {
+				this.features[i][f] = Math.round(1000.0 * random.nextGaussian()) / 1000.0;
+			}
+		}
+		this.pool = (this.numThreads > 1) ? new ForkJoinPool(this.numThreads) : null;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (this.pool != null) {
+			this.pool.shutdown();
+		}
+	}
+
+	@Benchmark
+	public SymmetricMatrix distances() {
+		return new FeatureDistances(this.features, this.metric, this.storage, 
+				this.pool).getDistanceMatrix();
+	}
+
+}
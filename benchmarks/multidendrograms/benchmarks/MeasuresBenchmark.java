@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.dendrogram.DendrogramCut;
+import multidendrograms.dendrogram.DendrogramMeasures;
+import multidendrograms.dendrogram.UltrametricMatrix;
+import multidendrograms.types.BandHeight;
+import multidendrograms.types.MethodType;
+import multidendrograms.types.OriginType;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Ultrametric matrix, dendrogram measures and flat cuts of the Arithmetic
+ * Linkage dendrogram of a synthetic matrix
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MeasuresBenchmark {
+
+	private static final int NUM_HEIGHTS = 100;
+
+	@Param({"500", "2000"})
+	public int numElements;
+
+	@Param({"false", "true"})
+	public boolean withTies;
+
+	private SymmetricMatrix proximityMatrix;
+	private String[] labels;
+	private Dendrogram root;
+	private SymmetricMatrix ultrametricMatrix;
+	private double[] heights;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.proximityMatrix = BenchmarkData.randomMatrix(this.numElements, 3, 
+				this.withTies, 1);
+		this.labels = BenchmarkData.labels(this.numElements);
+		this.root = BenchmarkData.build(MethodType.ARITHMETIC_LINKAGE, 
+				this.proximityMatrix, this.labels, 3, 
+				EngineType.VARIABLE_GROUP).getRoot();
+		this.ultrametricMatrix = ultrametric();
+		// Heights evenly spaced over the range of the proximities
+		this.heights = new double[NUM_HEIGHTS];
+		for (int h = 0; h < NUM_HEIGHTS; h ++) {
+			this.heights[h] = (double)h / (double)NUM_HEIGHTS;
+		}
+	}
+
+	@Benchmark
+	public SymmetricMatrix ultrametric() {
+		return new UltrametricMatrix(this.root, this.labels, 
+				OriginType.UNIFORM_ORIGIN, BandHeight.BAND_BOTTOM).getMatrix();
+	}
+
+	@Benchmark
+	public DendrogramMeasures measures() {
+		return new DendrogramMeasures(this.proximityMatrix, this.root, 
+				this.ultrametricMatrix);
+	}
+
+	@Benchmark
+	public DendrogramCut cut() {
+		return new DendrogramCut(new Dendrogram[] {this.root}, this.heights, 
+				BandHeight.BAND_BOTTOM);
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.data.ReadTxt;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Reading of text data files, for every format of the sample files and for
+ * synthetic files of 2000 elements in list, matrix and triangular formats
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReadTxtBenchmark {
+
+	@Param({"sample_files/list_labels.txt", "sample_files/list_numbers.txt", 
+		"sample_files/matrix_no_header.txt", "sample_files/matrix_top_header.txt", 
+		"sample_files/matrix_left_header.txt", "sample_files/triangular_no_header.txt", 
+		"sample_files/triangular_top_header.txt", "sample_files/triangular_left_header.txt", 
+		"sample_files/separators.txt", "synthetic-list-2000", "synthetic-matrix-2000", 
+		"synthetic-triangular-2000"})
+	public String data;
+
+	private String fileName;
+	private File syntheticFile = null;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		if (this.data.startsWith("synthetic-")) {
+			String[] parts = this.data.split("-");
+			BenchmarkData.TxtFormat format = 
+					BenchmarkData.TxtFormat.valueOf(parts[1].toUpperCase());
+			int numElements = Integer.parseInt(parts[2]);
+			SymmetricMatrix matrix = BenchmarkData.randomMatrix(numElements, 3, 
+					false, 1);
+			this.syntheticFile = File.createTempFile("md-" + parts[1], ".txt");
+			BenchmarkData.writeTxt(matrix, BenchmarkData.labels(numElements), 
+					format, this.syntheticFile);
+			this.fileName = this.syntheticFile.getPath();
+		} else {
+			this.fileName = this.data;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (this.syntheticFile != null) {
+			this.syntheticFile.delete();
+		}
+	}
+
+	@Benchmark
+	public SymmetricMatrix readTxt() throws Exception {
+		return new ReadTxt(this.fileName).getProximityMatrix();
+	}
+
+}
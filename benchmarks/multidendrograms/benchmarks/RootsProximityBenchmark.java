@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.benchmarks;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.clusterings.HierarchicalClustering;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.data.ExternalData;
+import multidendrograms.direct.DirectClustering;
+import multidendrograms.types.MethodType;
+import multidendrograms.types.ProximityType;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Resolution of the slots of the roots, comparing the lookup of boxed
+ * identifiers in a hash map with the lookup in an int array, and the whole
+ * clustering of a sample file and of a synthetic matrix
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(1)
+public class RootsProximityBenchmark {
+
+	@Param({"sample_files/iris_pca_distances.txt", "synthetic-5000"})
+	public String data;
+
+	@Param({"ARITHMETIC_LINKAGE", "WARD"})
+	public MethodType method;
+
+	private SymmetricMatrix proximityMatrix;
+	private String[] labels;
+	private int precision;
+
+	private HashMap<Integer, Integer> identifiersMap;
+	private int[] identifiersArray;
+	private int[] identifiers;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		if (this.data.startsWith("synthetic-")) {
+			int numElements = Integer.parseInt(this.data.substring(10));
+			this.proximityMatrix = BenchmarkData.randomMatrix(numElements, 3, 
+					false, 1);
+			this.labels = BenchmarkData.labels(numElements);
+			this.precision = 3;
+		} else {
+			ExternalData externalData = BenchmarkData.readFile(this.data);
+			this.proximityMatrix = externalData.getProximityMatrix();
+			this.labels = externalData.getNames();
+			this.precision = externalData.getPrecision();
+		}
+		int numElements = this.labels.length;
+		// Identifiers of a clustering of all the elements
+		int numClusters = 2 * numElements;
+		this.identifiersMap = new HashMap<Integer, Integer>();
+		this.identifiersArray = new int[numClusters];
+		for (int id = 1; id < numClusters; id ++) {
+			this.identifiersMap.put(id, id - 1);
+			this.identifiersArray[id] = id - 1;
+		}
+		Random random = new Random(1);
+		this.identifiers = new int[1 << 16];
+		for (int n = 0; n < this.identifiers.length; n ++) {
+			this.identifiers[n] = 1 + random.nextInt(numClusters - 1);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public int hashMapLookup() {
+		int sum = 0;
+		for (int n = 0; n < this.identifiers.length; n ++) {
+			sum += this.identifiersMap.get(this.identifiers[n]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 5, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public int arrayLookup() {
+		int sum = 0;
+		for (int n = 0; n < this.identifiers.length; n ++) {
+			sum += this.identifiersArray[this.identifiers[n]];
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 1)
+	@Measurement(iterations = 3)
+	public void build(Blackhole blackhole) {
+		HierarchicalClustering clustering = DirectClustering.newClustering(
+				this.method, this.proximityMatrix, this.labels, 
+				ProximityType.DISTANCE, this.precision, false, 0.0, 
+				EngineType.VARIABLE_GROUP);
+		clustering.build();
+		blackhole.consume(clustering.getRoot());
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.clusterings.VersatileLinkage;
+import multidendrograms.core.definitions.SymmetricMatrix;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Versatile linkage clustering with the cache of powered proximities, 
+ * compared with powering each proximity whenever it is used
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+@State(Scope.Benchmark)
+@Fork(1)
+public class VersatileLinkageBenchmark {
+
+	@Param({"2000"})
+	public int numElements;
+
+	@Param({"-3.5", "-1", "0", "1", "3.5"})
+	public double power;
+
+	@Param({"false", "true"})
+	public boolean isCached;
+
+	@Param({"VARIABLE_GROUP", "NEAREST_NEIGHBOR_CHAIN"})
+	public EngineType engine;
+
+	private SymmetricMatrix proximityMatrix;
+	private String[] labels;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		this.proximityMatrix = BenchmarkData.randomMatrix(this.numElements, 3, 
+				false, 1);
+		this.labels = BenchmarkData.labels(this.numElements);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public void build(Blackhole blackhole) {
+		VersatileLinkage clustering = new VersatileLinkage(
+				this.proximityMatrix, this.labels, true, 3, false, this.power);
+		clustering.setCached(this.isCached);
+		clustering.setEngine(this.engine);
+		clustering.build();
+		blackhole.consume(clustering.getRoot());
+	}
+
+}
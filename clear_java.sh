@@ -1 +1,2 @@
 rm -f */*/*.class */*/*/*.class */*/*/*/*.class
+rm -rf benchmarks/classes
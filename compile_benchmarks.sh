@@ -0,0 +1,5 @@
+# Requires the classes from compile_java.sh and the JMH jars in benchmarks/lib
+# (jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3)
+javac -version
+mkdir -p benchmarks/classes
+javac -cp ".:benchmarks/lib/*" -d benchmarks/classes benchmarks/*/*/*.java
@@ -23,5 +23,13 @@ java -jar multidendrograms.jar  -direct sample_files/air_distances.txt D VL -3.5
 echo ---------
 java -jar multidendrograms.jar  -direct sample_files/air_distances.txt D WD weighted
 echo ---------
+java -jar multidendrograms.jar  -direct sample_files/tied_groups.txt D 1 AL
+echo ---------
+java -jar multidendrograms.jar  -engine NNC -direct sample_files/tied_groups.txt D 1 AL
+echo ---------
+java -jar multidendrograms.jar  -direct sample_files/iris_pca_distances.txt D 6 AL weighted
+echo ---------
+java -jar multidendrograms.jar  -engine NNC -direct sample_files/iris_pca_distances.txt D 6 AL weighted
+echo ---------
 
 pause
@@ -42,6 +42,17 @@ public class Centroid extends HierarchicalClustering {
 		this.isWeighted = isWeighted;
 	}
 
+	@Override
+	protected boolean isCentroidLinkage() {
+		return true;
+	}
+
+	// Weighted centroids are the means of the centroids of their subroots
+	@Override
+	protected double centroidWeight(Dendrogram subroot) {
+		return this.isWeighted ? 1.0 : subroot.numberOfLeaves();
+	}
+
 	@Override
 	protected double calculateProximity(Dendrogram cI, Dendrogram cJ) {
 		return Math.sqrt(alphaTerm(cI, cJ) + betaTerm(cI, cJ) + betaTerm(cJ, cI));
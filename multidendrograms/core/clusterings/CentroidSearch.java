@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.core.clusterings;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import multidendrograms.core.definitions.Dendrogram;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Variable-group agglomeration of Euclidean points for linkages whose 
+ * distance between roots only depends on their centroids and numbers of 
+ * elements. Each root keeps its centroid, the distances are calculated when 
+ * the nearest roots are searched, and no proximity matrix is needed
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class CentroidSearch {
+
+	private static final int NULL_SLOT = -1;
+	// Minimum number of slots of a parallel task
+	private static final int MIN_TASK_SLOTS = 256;
+
+	private final HierarchicalClustering clustering;
+	private final int dimension;
+
+	// Roots by slot, a supercluster takes the lowest slot of its subroots
+	private final Dendrogram[] roots;
+	private final BitSet active;
+	private int numRoots;
+	// Centroid of each root, by slots
+	private final double[] centroids;
+
+	// Nearest root of each slot
+	private final double[] nearestProximities;
+	private final int[] nearestSlots;
+
+	// Slots merged in an iteration, grouped in a disjoint-set forest whose 
+	// representatives are their first slots, and linked in order
+	private final int[] parents;
+	private final int[] nextSlots;
+	private final int[] lastSlots;
+	private final boolean[] isMerged;
+	private final int[] merged;
+	// Slots of the superclusters of the last iteration
+	private final boolean[] isNew;
+	private int[] newSlots = new int[0];
+
+	public CentroidSearch(HierarchicalClustering clustering, 
+			Dendrogram[] leaves, double[] points, int dimension) {
+		this.clustering = clustering;
+		this.dimension = dimension;
+		int n = leaves.length;
+		this.roots = leaves.clone();
+		this.active = new BitSet(n);
+		this.active.set(0, n);
+		this.numRoots = n;
+		this.centroids = new double[n * dimension];
+		System.arraycopy(points, 0, this.centroids, 0, n * dimension);
+		this.nearestProximities = new double[n];
+		this.nearestSlots = new int[n];
+		Arrays.fill(this.nearestSlots, NULL_SLOT);
+		this.parents = new int[n];
+		this.nextSlots = new int[n];
+		this.lastSlots = new int[n];
+		for (int s = 0; s < n; s ++) {
+			leaves[s].setSupercluster(false);
+			this.parents[s] = s;
+			this.nextSlots[s] = NULL_SLOT;
+			this.lastSlots[s] = s;
+		}
+		this.isMerged = new boolean[n];
+		this.merged = new int[n];
+		this.isNew = new boolean[n];
+		updateNearestRoots();
+	}
+
+	public int numberOfRoots() {
+		return this.numRoots;
+	}
+
+	// The root of the first slot, which is never released
+	public Dendrogram getRoot() {
+		return this.roots[0];
+	}
+
+	// Roots in order of their first elements
+	public Dendrogram[] getRoots() {
+		Dendrogram[] forest = new Dendrogram[this.numRoots];
+		int r = 0;
+		for (int s = this.active.nextSetBit(0); s >= 0; 
+				s = this.active.nextSetBit(s + 1)) {
+			forest[r] = this.roots[s];
+			r ++;
+		}
+		return forest;
+	}
+
+	// Distance of the roots merged by the next iteration
+	public double nextProximity() {
+		double proximity = Double.POSITIVE_INFINITY;
+		for (int s = this.active.nextSetBit(0); s >= 0; 
+				s = this.active.nextSetBit(s + 1)) {
+			proximity = Math.min(proximity, this.nearestProximities[s]);
+		}
+		return proximity;
+	}
+
+	// Joins the roots at a distance tied with the nearest one, as the 
+	// variable-group algorithm
+	public void iteration() {
+		if (this.numRoots < 2) {
+			return;
+		}
+		double proximity = nextProximity();
+		long level = this.clustering.level(proximity);
+		int numMerged = 0;
+		for (int i = this.active.nextSetBit(0); i >= 0; 
+				i = this.active.nextSetBit(i + 1)) {
+			// Only rows whose nearest root is tied can have tied pairs
+			if (this.clustering.level(this.nearestProximities[i]) != level) {
+				continue;
+			}
+			for (int j = this.active.nextSetBit(i + 1); j >= 0; 
+					j = this.active.nextSetBit(j + 1)) {
+				if (this.clustering.level(proximity(i, j)) == level) {
+					numMerged = addMerged(i, numMerged);
+					numMerged = addMerged(j, numMerged);
+					union(find(i), find(j));
+				}
+			}
+		}
+		// Superclusters, with their subroots in order of their first elements
+		Arrays.sort(this.merged, 0, numMerged);
+		for (int k = 0; k < this.newSlots.length; k ++) {
+			this.isNew[this.newSlots[k]] = false;
+		}
+		int numNew = 0;
+		for (int m = 0; m < numMerged; m ++) {
+			int slot = this.merged[m];
+			int group = find(slot);
+			if (group == slot) {
+				this.merged[numNew] = slot;
+				numNew ++;
+			} else {
+				this.nextSlots[this.lastSlots[group]] = slot;
+				this.lastSlots[group] = slot;
+			}
+		}
+		this.newSlots = Arrays.copyOf(this.merged, numNew);
+		for (int k = 0; k < numNew; k ++) {
+			merge(this.newSlots[k], proximity);
+			this.isNew[this.newSlots[k]] = true;
+		}
+		updateNearestRoots();
+	}
+
+	private int addMerged(int slot, int numMerged) {
+		if (!this.isMerged[slot]) {
+			this.isMerged[slot] = true;
+			this.merged[numMerged] = slot;
+			numMerged ++;
+		}
+		return numMerged;
+	}
+
+	// Supercluster of the slots linked from the given one, at the centroid 
+	// of their roots
+	private void merge(int slot, double proximity) {
+		Dendrogram supercluster = this.clustering.newSupercluster(proximity);
+		int numSubroots = 0;
+		for (int s = slot; s != NULL_SLOT; s = this.nextSlots[s]) {
+			supercluster.addSubcluster(this.roots[s]);
+			numSubroots ++;
+		}
+		if (numSubroots > 2) {
+			double rootTopHeight = Double.NEGATIVE_INFINITY;
+			for (int s = slot; s != NULL_SLOT; s = this.nextSlots[s]) {
+				for (int t = this.nextSlots[s]; t != NULL_SLOT; 
+						t = this.nextSlots[t]) {
+					rootTopHeight = Math.max(rootTopHeight, proximity(s, t));
+				}
+			}
+			supercluster.setRootTopHeight(rootTopHeight);
+			supercluster.setRootInternalHeight(
+					this.clustering.calculateInternalProximity(supercluster));
+		}
+		double[] centroid = new double[this.dimension];
+		double totalWeight = 0.0;
+		for (int s = slot; s != NULL_SLOT; s = this.nextSlots[s]) {
+			double weight = this.clustering.centroidWeight(this.roots[s]);
+			int first = s * this.dimension;
+			for (int f = 0; f < this.dimension; f ++) {
+				centroid[f] += weight * this.centroids[first + f];
+			}
+			totalWeight += weight;
+		}
+		int first = slot * this.dimension;
+		for (int f = 0; f < this.dimension; f ++) {
+			this.centroids[first + f] = centroid[f] / totalWeight;
+		}
+		int s = slot;
+		while (s != NULL_SLOT) {
+			int next = this.nextSlots[s];
+			if (s != slot) {
+				this.roots[s] = null;
+				this.active.clear(s);
+				this.numRoots --;
+			}
+			this.parents[s] = s;
+			this.nextSlots[s] = NULL_SLOT;
+			this.lastSlots[s] = s;
+			this.isMerged[s] = false;
+			s = next;
+		}
+		this.roots[slot] = supercluster;
+		supercluster.setSupercluster(false);
+	}
+
+	private int find(int slot) {
+		while (this.parents[slot] != slot) {
+			this.parents[slot] = this.parents[this.parents[slot]];
+			slot = this.parents[slot];
+		}
+		return slot;
+	}
+
+	// The first slot represents the union
+	private void union(int slot1, int slot2) {
+		if (slot1 < slot2) {
+			this.parents[slot2] = slot1;
+		} else if (slot2 < slot1) {
+			this.parents[slot1] = slot2;
+		}
+	}
+
+	private double proximity(int slot1, int slot2) {
+		int first1 = slot1 * this.dimension;
+		int first2 = slot2 * this.dimension;
+		double sum = 0.0;
+		for (int f = 0; f < this.dimension; f ++) {
+			double difference = this.centroids[first1 + f] - this.centroids[first2 + f];
+			sum += difference * difference;
+		}
+		return this.clustering.centroidsProximity(this.roots[slot1], 
+				this.roots[slot2], sum);
+	}
+
+	// Each slot only updates its own nearest root
+	private void updateNearestRoots() {
+		int numSlots = this.roots.length;
+		ForkJoinPool pool = this.clustering.getForkJoinPool();
+		if ((pool != null) && (this.numRoots > MIN_TASK_SLOTS)) {
+			pool.invoke(new NearestTask(0, numSlots));
+		} else {
+			updateNearestRoots(0, numSlots);
+		}
+	}
+
+	private void updateNearestRoots(int fromSlot, int toSlot) {
+		for (int i = this.active.nextSetBit(fromSlot); (i >= 0) && (i < toSlot); 
+				i = this.active.nextSetBit(i + 1)) {
+			int nearest = this.nearestSlots[i];
+			if ((nearest == NULL_SLOT) || this.isNew[i] || 
+					!this.active.get(nearest) || this.isNew[nearest]) {
+				findNearestRoot(i);
+			} else {
+				// Only the distances to the superclusters have changed
+				for (int k = 0; k < this.newSlots.length; k ++) {
+					int j = this.newSlots[k];
+					setIfNearer(i, j, proximity(i, j));
+				}
+			}
+		}
+	}
+
+	private void findNearestRoot(int i) {
+		this.nearestProximities[i] = Double.POSITIVE_INFINITY;
+		this.nearestSlots[i] = NULL_SLOT;
+		for (int j = this.active.nextSetBit(0); j >= 0; 
+				j = this.active.nextSetBit(j + 1)) {
+			if (j != i) {
+				setIfNearer(i, j, proximity(i, j));
+			}
+		}
+	}
+
+	private void setIfNearer(int i, int j, double proximity) {
+		if ((this.nearestSlots[i] == NULL_SLOT) || 
+				(proximity < this.nearestProximities[i])) {
+			this.nearestProximities[i] = proximity;
+			this.nearestSlots[i] = j;
+		}
+	}
+
+	private class NearestTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int fromSlot;
+		private final int toSlot;
+
+		public NearestTask(int fromSlot, int toSlot) {
+			this.fromSlot = fromSlot;
+			this.toSlot = toSlot;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toSlot - this.fromSlot <= MIN_TASK_SLOTS) {
+				updateNearestRoots(this.fromSlot, this.toSlot);
+			} else {
+				int middleSlot = (this.fromSlot + this.toSlot) >>> 1;
+				invokeAll(new NearestTask(this.fromSlot, middleSlot), 
+						new NearestTask(middleSlot, this.toSlot));
+			}
+		}
+
+	}
+
+}
@@ -39,6 +39,21 @@ public class CompleteLinkage extends HierarchicalClustering {
 		super(proximityMatrix, labels, isDistanceBased, precision);
 	}
 
+	@Override
+	protected boolean isReducible() {
+		return true;
+	}
+
+	@Override
+	protected boolean preservesSparsity() {
+		return true;
+	}
+
+	@Override
+	protected boolean isNearestLinkage() {
+		return !this.isDistanceBased;
+	}
+
 	@Override
 	protected double calculateProximity(Dendrogram cI, Dendrogram cJ) {
 		return maximumProximity(cI, cJ);
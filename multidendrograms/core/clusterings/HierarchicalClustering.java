@@ -18,12 +18,16 @@
 
 package multidendrograms.core.clusterings;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.DendrogramStore;
 import multidendrograms.core.definitions.SymmetricMatrix;
 import multidendrograms.core.utils.MathUtils;
 
@@ -42,71 +46,428 @@ public abstract class HierarchicalClustering {
 
 	protected boolean isDistanceBased;
 	private int precision;
+	// Proximities are tied when they have the same level, the integer of 
+	// their rounding at the precision
+	private final double levelFactor;
 
 	private int nextClusterId = 1;
-	private Dendrogram[] roots;
-	protected HashMap<Integer, Integer> rootsToIndexes;
-	private SymmetricMatrix rootsMatrix;
+	private final DendrogramStore store;
+	private final Dendrogram[] leaves;
+	private final SymmetricMatrix proximityMatrix;
+	// Created when first needed, the spanning tree engine does not use it
+	private RootsMatrix rootsMatrix = null;
+
+	private EngineType engine = EngineType.VARIABLE_GROUP;
+	private NearestNeighborChain chain = null;
+	private SpanningTree tree = null;
+	private CentroidSearch search = null;
+	private NearestQueue queue = null;
+	// Set when a single root remains, the working structures are released
+	private Dendrogram root = null;
+
+	// Nearest root of each slot, only updated for the slots touched by a 
+	// merge
+	private double[] nearestProximities = null;
+	private int[] nearestSlots = null;
+
+	// Pool for the calculation of the superclusters proximities, or null
+	private ForkJoinPool pool = null;
+
+	// Cancelled builds stop between iterations
+	private volatile boolean isCancelled = false;
 
 	private static final int NULL_GROUP = 0;
+	// Minimum number of slots of a parallel task
+	private static final int MIN_TASK_SLOTS = 256;
 
 	public HierarchicalClustering(SymmetricMatrix proximityMatrix, 
 			String[] labels, boolean isDistanceBased, int precision) {
 		this.isDistanceBased = isDistanceBased;
 		this.precision = precision;
+		this.levelFactor = MathUtils.factor(precision);
 		// Initialize roots
 		int numElements = proximityMatrix.numberOfRows();
-		this.roots = new Dendrogram[numElements];
+		this.store = new DendrogramStore(2 * numElements, isDistanceBased, 
+				precision);
+		this.leaves = new Dendrogram[numElements];
 		for (int n = 0; n < numElements; n ++) {
-			Dendrogram root = new Dendrogram(this.nextClusterId, labels[n], 
-					isDistanceBased, precision);
+			Dendrogram root = this.store.newDendrogram(this.nextClusterId, 
+					labels[n]);
 			this.nextClusterId ++;
 			double proximity = proximityMatrix.getElement(n, n);
 			if (!Double.isNaN(proximity)) {
 				root.setRootHeights(proximity);
 				root.setNodesHeights(proximity);
 			}
-			this.roots[n] = root;
+			this.leaves[n] = root;
+		}
+		this.proximityMatrix = proximityMatrix;
+	}
+
+	private void initRootsMatrix() {
+		if (this.rootsMatrix == null) {
+			this.rootsMatrix = new RootsMatrix(this.leaves, 
+					this.proximityMatrix, preservesSparsity());
+			resetRootsCache();
+		}
+	}
+
+	public boolean supportsEngine(EngineType engine) {
+		if (engine.equals(EngineType.MINIMUM_SPANNING_TREE)) {
+			return isNearestLinkage() && 
+					!Double.isNaN(this.proximityMatrix.minimumValue()) && 
+					!Double.isNaN(this.proximityMatrix.maximumValue());
+		} else if (engine.equals(EngineType.CENTROID_SEARCH)) {
+			return isCentroidLinkage() && this.isDistanceBased && 
+					(this.proximityMatrix.getPoints() != null);
+		} else {
+			return engine.equals(EngineType.VARIABLE_GROUP) || 
+					engine.equals(EngineType.PRIORITY_QUEUE) || isReducible();
+		}
+	}
+
+	// Reducible linkages never produce a proximity closer than the closest 
+	// proximity between the merged roots and any other root
+	protected boolean isReducible() {
+		return false;
+	}
+
+	protected boolean isReducible(Dendrogram supercluster) {
+		return isReducible();
+	}
+
+	// Linkages for which the proximity between roots is the missing value of 
+	// a sparse matrix when it is so between all their subroots, so that 
+	// sparse matrices can be clustered without storing the missing values
+	protected boolean preservesSparsity() {
+		return false;
+	}
+
+	// Linkages whose proximity between roots is the nearest proximity 
+	// between their elements, given by a spanning tree of the elements
+	protected boolean isNearestLinkage() {
+		return false;
+	}
+
+	// Linkages whose distance between roots of Euclidean points only depends 
+	// on the centroids of the roots and their numbers of elements
+	protected boolean isCentroidLinkage() {
+		return false;
+	}
+
+	// Weight of a subroot in the centroid of its supercluster
+	protected double centroidWeight(Dendrogram subroot) {
+		return subroot.numberOfLeaves();
+	}
+
+	// Distance between roots from the squared distance between their 
+	// centroids
+	protected double centroidsProximity(Dendrogram root1, Dendrogram root2, 
+			double squaredDistance) {
+		return Math.sqrt(squaredDistance);
+	}
+
+	// Called when the proximities between the roots are initialized, for 
+	// linkages that keep values derived from them by slot
+	protected void resetRootsCache() {
+	}
+
+	// Called when the tree is complete
+	protected void releaseRootsCache() {
+	}
+
+	protected void writeRootsCache(DataOutput out) throws IOException {
+	}
+
+	// Called after the roots matrix has been read
+	protected void readRootsCache(DataInput in) throws IOException {
+	}
+
+	// To be set before the first iteration
+	public void setEngine(EngineType engine) {
+		this.engine = engine;
+		this.chain = null;
+		this.tree = null;
+		this.search = null;
+		this.queue = null;
+		if (engine.equals(EngineType.NEAREST_NEIGHBOR_CHAIN)) {
+			initRootsMatrix();
+			this.chain = new NearestNeighborChain(this, this.rootsMatrix, 
+					this.isDistanceBased, this.precision);
+		} else if (engine.equals(EngineType.MINIMUM_SPANNING_TREE)) {
+			this.tree = new SpanningTree(this, this.leaves, 
+					this.proximityMatrix, this.isDistanceBased);
+		} else if (engine.equals(EngineType.CENTROID_SEARCH)) {
+			this.search = new CentroidSearch(this, this.leaves, 
+					this.proximityMatrix.getPoints(), 
+					this.proximityMatrix.getDimension());
 		}
-		mapRootsToIndexes();
-		this.rootsMatrix = proximityMatrix;
+	}
+
+	public EngineType getEngine() {
+		return this.engine;
+	}
+
+	// Results do not depend on the pool, each proximity is calculated in the 
+	// same way by a single thread
+	public void setForkJoinPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	public ForkJoinPool getForkJoinPool() {
+		return this.pool;
 	}
 
 	public void build() {
-		while (numberOfRoots() > 1) {
+		build(1, Double.NaN);
+	}
+
+	// Stops with the given number of roots, fewer if tied roots are merged
+	// together, or before merging roots beyond the cutoff, NaN for none
+	public void build(int numClusters, double cutoff) {
+		while (!isStopped(numClusters, cutoff) && !this.isCancelled) {
 			iteration();
 		}
 	}
 
+	// All the engines but the nearest-neighbor chain merge the roots in 
+	// order of proximity
+	public boolean isStopped(int numClusters, double cutoff) {
+		if (numberOfRoots() <= Math.max(numClusters, 1)) {
+			return true;
+		} else if ((numClusters <= 1) && Double.isNaN(cutoff)) {
+			return false;
+		} else if (this.chain != null) {
+			throw new IllegalStateException(
+					"Nearest-neighbor chain not merged in order of proximity");
+		} else if (Double.isNaN(cutoff)) {
+			return false;
+		} else {
+			double proximity = nextProximity();
+			return !isTied(proximity, cutoff) && (this.isDistanceBased ? 
+					(proximity > cutoff) : (proximity < cutoff));
+		}
+	}
+
+	// Proximity of the roots merged by the next iteration
+	private double nextProximity() {
+		if (this.tree != null) {
+			return this.tree.nextProximity();
+		} else if (this.search != null) {
+			return this.search.nextProximity();
+		}
+		initRootsMatrix();
+		if (this.engine.equals(EngineType.PRIORITY_QUEUE)) {
+			if (this.queue == null) {
+				this.queue = new NearestQueue(this, this.rootsMatrix, 
+						this.isDistanceBased);
+			}
+			return this.queue.nearestProximity();
+		}
+		if (this.nearestSlots == null) {
+			initNearestRoots();
+		}
+		return groupingProximity();
+	}
+
+	// May be called from any thread
+	public void cancel() {
+		this.isCancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return this.isCancelled;
+	}
+
+	// The spanning tree engine is fast enough to be run again instead, and 
+	// the state of the centroid search is not kept
+	public boolean supportsCheckpoints() {
+		return (this.tree == null) && (this.search == null) && 
+				(this.root == null);
+	}
+
+	// State between iterations: the forest of dendrograms, the roots and 
+	// their proximities, and the state of the engine
+	public void writeState(DataOutput out) throws IOException {
+		if (!supportsCheckpoints()) {
+			throw new IllegalStateException("No state to save");
+		}
+		out.writeUTF(this.engine.name());
+		out.writeInt(this.nextClusterId);
+		this.store.writeNodes(out);
+		out.writeBoolean(this.rootsMatrix != null);
+		if (this.rootsMatrix != null) {
+			this.rootsMatrix.write(out);
+			writeRootsCache(out);
+		}
+		if (this.chain != null) {
+			this.chain.write(out);
+		}
+	}
+
+	// To be read by a clustering created with the same data and parameters. 
+	// The nearest roots are searched again in the next iteration.
+	public void readState(DataInput in) throws IOException {
+		EngineType engine;
+		try {
+			engine = EngineType.valueOf(in.readUTF());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown engine");
+		}
+		if (engine.equals(EngineType.MINIMUM_SPANNING_TREE) || 
+				engine.equals(EngineType.CENTROID_SEARCH) || 
+				!supportsEngine(engine)) {
+			throw new IOException("Engine not supported: " + engine);
+		}
+		this.engine = engine;
+		this.tree = null;
+		this.search = null;
+		this.queue = null;
+		this.chain = null;
+		this.root = null;
+		this.nearestProximities = null;
+		this.nearestSlots = null;
+		this.nextClusterId = in.readInt();
+		this.store.readNodes(in, this.leaves.length);
+		if (in.readBoolean()) {
+			initRootsMatrix();
+			this.rootsMatrix.read(in, this.store);
+			readRootsCache(in);
+		} else if (this.rootsMatrix != null) {
+			this.rootsMatrix.reset(this.leaves, this.proximityMatrix);
+			resetRootsCache();
+		}
+		if (engine.equals(EngineType.NEAREST_NEIGHBOR_CHAIN)) {
+			initRootsMatrix();
+			this.chain = new NearestNeighborChain(this, this.rootsMatrix, 
+					this.isDistanceBased, this.precision);
+			this.chain.read(in);
+		}
+	}
+
 	public void iteration() {
-		int[] groups = groupRoots();
-		Dendrogram[] newRoots = createNewRoots(groups);
-		updateInternalProximities(newRoots);
-		this.rootsMatrix = newProximityMatrix(groups, newRoots);
-		this.roots = newRoots;
-		mapRootsToIndexes();
+		if (this.root != null) {
+			return;
+		}
+		if (this.tree != null) {
+			this.tree.iteration();
+		} else if (this.search != null) {
+			this.search.iteration();
+		} else if ((this.chain != null) && !this.chain.iteration()) {
+			// Not reducible supercluster, start again with variable-group
+			this.engine = EngineType.VARIABLE_GROUP;
+			this.chain = null;
+			this.nextClusterId = this.leaves.length + 1;
+			this.store.truncate(this.leaves.length);
+			this.nearestSlots = null;
+			this.rootsMatrix.reset(this.leaves, this.proximityMatrix);
+			resetRootsCache();
+		}
+		if ((this.tree == null) && (this.search == null) && 
+				(this.chain == null)) {
+			double proximity = nextProximity();
+			if (this.queue != null) {
+				this.queue.findTiedSlots(proximity);
+			}
+			int[] groups = groupRoots(proximity);
+			Dendrogram[] superclusters = mergeGroups(groups, proximity);
+			updateInternalProximities(superclusters);
+			updateProximities(superclusters);
+			releaseRoots(superclusters);
+			if (this.queue != null) {
+				this.queue.update(superclusters);
+			} else {
+				updateNearestRoots(superclusters);
+			}
+		}
+		if (numberOfRoots() == 1) {
+			if (this.chain != null) {
+				replayChain();
+			}
+			this.root = getRoot();
+			this.rootsMatrix = null;
+			this.chain = null;
+			this.tree = null;
+			this.search = null;
+			this.queue = null;
+			this.nearestProximities = null;
+			this.nearestSlots = null;
+			releaseRootsCache();
+		}
 	}
 
 	public int numberOfRoots() {
-		return this.roots.length;
+		if (this.root != null) {
+			return 1;
+		} else if (this.tree != null) {
+			return this.tree.numberOfRoots();
+		} else if (this.search != null) {
+			return this.search.numberOfRoots();
+		} else if (this.rootsMatrix == null) {
+			return this.leaves.length;
+		} else {
+			return this.rootsMatrix.numberOfRoots();
+		}
 	}
 
 	public Dendrogram getRoot() {
-		return this.roots[0];
+		if (this.root != null) {
+			return this.root;
+		} else if (this.tree != null) {
+			return this.tree.getRoot();
+		} else if (this.search != null) {
+			return this.search.getRoot();
+		} else if (this.rootsMatrix == null) {
+			return this.leaves[0];
+		} else {
+			return this.rootsMatrix.getRoot(this.rootsMatrix.firstSlot());
+		}
 	}
 
-	private int[] groupRoots() {
+	// Roots of the forest, in order of their first elements
+	public Dendrogram[] getRoots() {
+		if (this.root != null) {
+			return new Dendrogram[] {this.root};
+		} else if (this.tree != null) {
+			return this.tree.getRoots();
+		} else if (this.search != null) {
+			return this.search.getRoots();
+		} else if (this.rootsMatrix == null) {
+			return this.leaves.clone();
+		} else {
+			Dendrogram[] roots = new Dendrogram[numberOfRoots()];
+			int r = 0;
+			for (int s = this.rootsMatrix.firstSlot(); s != RootsMatrix.NULL_SLOT; 
+					s = this.rootsMatrix.nextSlot(s + 1)) {
+				roots[r] = this.rootsMatrix.getRoot(s);
+				r ++;
+			}
+			return roots;
+		}
+	}
+
+	private int[] groupRoots(double groupingProximity) {
 		// Initialize groups
-		int numRoots = this.roots.length;
-		int[] groups = new int[numRoots];
+		int numSlots = this.rootsMatrix.numberOfSlots();
+		int[] groups = new int[numSlots];
 		Arrays.fill(groups, NULL_GROUP);
 		// Put each root in a group.
 		// If they have to be merged, they are put in the same group.
 		int nextGroupId = 1;
-		for (int i = 0; i < numRoots - 1; i ++) {
-			for (int j = i + 1; j < numRoots; j ++) {
+		long groupingLevel = level(groupingProximity);
+		boolean isNaN = Double.isNaN(groupingProximity);
+		for (int i = this.rootsMatrix.firstSlot(); i != RootsMatrix.NULL_SLOT; 
+				i = this.rootsMatrix.nextSlot(i + 1)) {
+			// Only rows whose nearest root is tied can have tied pairs
+			if ((this.queue != null) ? !this.queue.isTied(i) : (!isNaN && 
+					(level(this.nearestProximities[i]) != groupingLevel))) {
+				continue;
+			}
+			for (int j = this.rootsMatrix.nextSlot(i + 1); 
+					j != RootsMatrix.NULL_SLOT; 
+					j = this.rootsMatrix.nextSlot(j + 1)) {
 				double proximity = this.rootsMatrix.getElement(i, j);
-				if (isInRange(proximity)) {
+				if (level(proximity) == groupingLevel) {
 					// Merge groups at minimum distance (or maximum similarity)
 					if ((groups[i] == NULL_GROUP) && 
 						(groups[j] == NULL_GROUP)) {
@@ -127,7 +488,7 @@ public abstract class HierarchicalClustering {
 							// Merge the two roots in the same group
 							int minGroupId = Math.min(groups[i], groups[j]);
 							int maxGroupId = Math.max(groups[i], groups[j]);
-							for (int k = 0; k < numRoots; k ++) {
+							for (int k = 0; k < numSlots; k ++) {
 								if (groups[k] == maxGroupId) {
 									groups[k] = minGroupId;
 								}
@@ -140,112 +501,372 @@ public abstract class HierarchicalClustering {
 		return groups;
 	}
 
-	private boolean isInRange(double proximity) {
-		final double epsilon = 1.0 / Math.pow(10, this.precision + 1);
-		double value = MathUtils.round(proximity, this.precision);
-		double bound = MathUtils.round(groupingProximity(), this.precision);
-		return (Math.abs(value - bound) < epsilon);
+	protected boolean isTied(double proximity1, double proximity2) {
+		return level(proximity1) == level(proximity2);
+	}
+
+	// Levels keep the order of the proximities
+	long level(double proximity) {
+		return MathUtils.quantize(proximity, this.levelFactor);
 	}
 
-	private Dendrogram[] createNewRoots(int[] groups) {
+	private Dendrogram[] mergeGroups(int[] groups, double groupingProximity) {
+		// Each supercluster takes the slot of its first subroot
 		LinkedHashMap<Integer, Dendrogram> groupsToRoots = 
 				new LinkedHashMap<Integer, Dendrogram>();
-		for (int n = 0; n < groups.length; n ++) {
-			Dendrogram cluster = this.roots[n];
+		for (int n = this.rootsMatrix.firstSlot(); n != RootsMatrix.NULL_SLOT; 
+				n = this.rootsMatrix.nextSlot(n + 1)) {
+			Dendrogram cluster = this.rootsMatrix.getRoot(n);
 			if (groups[n] == NULL_GROUP) {
 				cluster.setSupercluster(false);
-				groupsToRoots.put(-cluster.getIdentifier(), cluster);
 			} else {
 				// Add cluster to the corresponding supercluster
 				if (groupsToRoots.containsKey(groups[n])) {
 					Dendrogram supercluster = groupsToRoots.get(groups[n]);
 					supercluster.addSubcluster(cluster);
+					this.rootsMatrix.removeRoot(n);
 				} else {
-					String label = Integer.toString(this.nextClusterId);
-					Dendrogram newSupercluster = new Dendrogram(
-							this.nextClusterId, label, this.isDistanceBased, 
-							this.precision);
-					this.nextClusterId ++;
-					newSupercluster.setRootHeights(groupingProximity());
-					newSupercluster.setBandsHeights(groupingProximity());
+					Dendrogram newSupercluster = 
+							newSupercluster(groupingProximity);
 					newSupercluster.addSubcluster(cluster);
 					groupsToRoots.put(groups[n], newSupercluster);
+					this.rootsMatrix.setRoot(n, newSupercluster);
+				}
+			}
+		}
+		return groupsToRoots.values().toArray(new Dendrogram[0]);
+	}
+
+	Dendrogram newSupercluster(double proximity) {
+		String label = Integer.toString(this.nextClusterId);
+		Dendrogram supercluster = this.store.newDendrogram(this.nextClusterId, 
+				label);
+		this.nextClusterId ++;
+		supercluster.setRootHeights(proximity);
+		supercluster.setBandsHeights(proximity);
+		return supercluster;
+	}
+
+	// The nearest-neighbor chain finds the same groups as the variable-group 
+	// engine, but merges them in another order, so that the means of the 
+	// proximities are summed in another order too. Its groups are merged 
+	// again level by level, as the variable-group engine does, which gives 
+	// the same proximities and heights, and the same identifiers.
+	private void replayChain() {
+		int numLeaves = this.leaves.length;
+		int numNodes = this.store.numberOfNodes();
+		int numSuperclusters = numNodes - numLeaves;
+		// Levels and subclusters of the superclusters, by node
+		long[] levels = new long[numSuperclusters];
+		int[] childrenStarts = new int[numSuperclusters + 1];
+		int[] children = new int[numNodes - 1];
+		int numChildren = 0;
+		for (int k = 0; k < numSuperclusters; k ++) {
+			Dendrogram supercluster = this.store.getDendrogram(numLeaves + k);
+			levels[k] = level(supercluster.getRootBottomHeight());
+			childrenStarts[k] = numChildren;
+			for (int i = 0; i < supercluster.numberOfSubclusters(); i ++) {
+				children[numChildren] = 
+						supercluster.getSubcluster(i).getIdentifier() - 1;
+				numChildren ++;
+			}
+		}
+		childrenStarts[numSuperclusters] = numChildren;
+		int[] order = levelsOrder(levels);
+		this.store.truncate(numLeaves);
+		this.nextClusterId = numLeaves + 1;
+		this.rootsMatrix.reset(this.leaves, this.proximityMatrix);
+		resetRootsCache();
+		Dendrogram[] nodes = new Dendrogram[numNodes];
+		System.arraycopy(this.leaves, 0, nodes, 0, numLeaves);
+		int[] groups = new int[this.rootsMatrix.numberOfSlots()];
+		int[] groupSlots = new int[numSuperclusters];
+		int first = 0;
+		while (first < numSuperclusters) {
+			// Superclusters at the level of the first one, whose subclusters 
+			// are already merged
+			Arrays.fill(groups, NULL_GROUP);
+			double groupingProximity = this.isDistanceBased ? 
+					Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+			int last = first;
+			while ((last < numSuperclusters) && 
+					(levels[order[last]] == levels[order[first]]) && 
+					isMergeable(order[last], childrenStarts, children, nodes)) {
+				int k = order[last];
+				int groupSlot = RootsMatrix.NULL_SLOT;
+				for (int c = childrenStarts[k]; c < childrenStarts[k + 1]; c ++) {
+					int slotC = this.rootsMatrix.getSlot(nodes[children[c]]);
+					groups[slotC] = last - first + 1;
+					if ((groupSlot == RootsMatrix.NULL_SLOT) || 
+							(slotC < groupSlot)) {
+						groupSlot = slotC;
+					}
+					for (int d = childrenStarts[k]; d < c; d ++) {
+						double proximity = this.rootsMatrix.getElement(slotC, 
+								this.rootsMatrix.getSlot(nodes[children[d]]));
+						groupingProximity = this.isDistanceBased ? 
+								Math.min(groupingProximity, proximity) : 
+								Math.max(groupingProximity, proximity);
+					}
 				}
+				groupSlots[last] = groupSlot;
+				last ++;
+			}
+			Dendrogram[] superclusters = mergeGroups(groups, groupingProximity);
+			updateInternalProximities(superclusters);
+			updateProximities(superclusters);
+			releaseRoots(superclusters);
+			for (int g = first; g < last; g ++) {
+				nodes[numLeaves + order[g]] = 
+						this.rootsMatrix.getRoot(groupSlots[g]);
+			}
+			first = last;
+		}
+	}
+
+	private boolean isMergeable(int k, int[] childrenStarts, int[] children, 
+			Dendrogram[] nodes) {
+		for (int c = childrenStarts[k]; c < childrenStarts[k + 1]; c ++) {
+			if (nodes[children[c]] == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// Positions of the levels from the nearest, ties in order of position
+	private int[] levelsOrder(long[] levels) {
+		int size = levels.length;
+		long[] distinctLevels = levels.clone();
+		Arrays.sort(distinctLevels);
+		int numDistinct = 0;
+		for (int k = 0; k < size; k ++) {
+			if ((numDistinct == 0) || 
+					(distinctLevels[k] != distinctLevels[numDistinct - 1])) {
+				distinctLevels[numDistinct] = distinctLevels[k];
+				numDistinct ++;
+			}
+		}
+		long[] keys = new long[size];
+		for (int k = 0; k < size; k ++) {
+			int rank = Arrays.binarySearch(distinctLevels, 0, numDistinct, 
+					levels[k]);
+			if (!this.isDistanceBased) {
+				rank = numDistinct - 1 - rank;
 			}
+			keys[k] = ((long)rank << 32) | k;
 		}
-		Dendrogram[] newRoots = new Dendrogram[groupsToRoots.size()];
-		int n = 0;
-		Iterator<Dendrogram> iter = groupsToRoots.values().iterator();
-		while (iter.hasNext()) {
-			newRoots[n] = iter.next();
-			n ++;
+		Arrays.sort(keys);
+		int[] order = new int[size];
+		for (int k = 0; k < size; k ++) {
+			order[k] = (int)keys[k];
 		}
-		return newRoots;
+		return order;
 	}
 
 	private double groupingProximity() {
-		return this.isDistanceBased ? this.rootsMatrix.minimumValue() : 
-									  this.rootsMatrix.maximumValue();
-	}
-
-	private void updateInternalProximities(Dendrogram[] newRoots) {
-		for (int n = 0; n < newRoots.length; n ++) {
-			Dendrogram root = newRoots[n];
-			int numSubroots = root.numberOfSubroots();
-			if (numSubroots > 2) {
-				double rootTopHeight = this.isDistanceBased ? 
-						Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
-				for (int i = 0; i < numSubroots - 1; i ++) {
-					Dendrogram subrI = root.getSubroot(i);
-					for (int j = i + 1; j < numSubroots; j ++) {
-						Dendrogram subrJ = root.getSubroot(j);
-						double proximity = rootsProximity(subrI, subrJ);
-						rootTopHeight = this.isDistanceBased ? 
-							Math.max(rootTopHeight, proximity) : 
-							Math.min(rootTopHeight, proximity);
-					}
+		double proximity = this.isDistanceBased ? 
+				Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		for (int i = this.rootsMatrix.firstSlot(); i != RootsMatrix.NULL_SLOT; 
+				i = this.rootsMatrix.nextSlot(i + 1)) {
+			double value = this.nearestProximities[i];
+			proximity = this.isDistanceBased ? 
+					Math.min(proximity, value) : Math.max(proximity, value);
+		}
+		return proximity;
+	}
+
+	private void initNearestRoots() {
+		int numSlots = this.rootsMatrix.numberOfSlots();
+		this.nearestProximities = new double[numSlots];
+		this.nearestSlots = new int[numSlots];
+		for (int i = this.rootsMatrix.firstSlot(); i != RootsMatrix.NULL_SLOT; 
+				i = this.rootsMatrix.nextSlot(i + 1)) {
+			findNearestRoot(i);
+		}
+	}
+
+	private void updateNearestRoots(Dendrogram[] superclusters) {
+		for (int i = this.rootsMatrix.firstSlot(); i != RootsMatrix.NULL_SLOT; 
+				i = this.rootsMatrix.nextSlot(i + 1)) {
+			int nearest = this.nearestSlots[i];
+			if (this.rootsMatrix.getRoot(i).isSupercluster() || 
+					(nearest == RootsMatrix.NULL_SLOT) || 
+					!this.rootsMatrix.isActive(nearest) || 
+					this.rootsMatrix.getRoot(nearest).isSupercluster()) {
+				findNearestRoot(i);
+			} else {
+				// Only the proximities to the superclusters have changed
+				for (int n = 0; n < superclusters.length; n ++) {
+					int j = this.rootsMatrix.getSlot(superclusters[n]);
+					setIfNearer(i, j, this.rootsMatrix.getElement(i, j));
 				}
-				root.setRootTopHeight(rootTopHeight);
-				double rootInternalHeight = calculateInternalProximity(root);
-				root.setRootInternalHeight(rootInternalHeight);
 			}
 		}
 	}
 
-	private SymmetricMatrix newProximityMatrix(int[] groups, 
-			Dendrogram[] newRoots) {
-		int numRoots = newRoots.length;
-		SymmetricMatrix newMatrix = new SymmetricMatrix(numRoots);
-		for (int i = 0; i < numRoots; i ++) {
-			Dendrogram rootI = newRoots[i];
-			double proximity = rootI.getRootBottomHeight();
-			newMatrix.setElement(i, i, proximity);
-			for (int j = i + 1; j < numRoots; j ++) {
-				Dendrogram rootJ = newRoots[j];
-				// Calculations only if there is a new cluster
-				if (rootI.isSupercluster() || rootJ.isSupercluster()) {
-					proximity = calculateProximity(rootI, rootJ);
-				} else {
-					proximity = rootsProximity(rootI, rootJ);
+	private void findNearestRoot(int i) {
+		this.nearestProximities[i] = this.isDistanceBased ? 
+				Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY;
+		this.nearestSlots[i] = RootsMatrix.NULL_SLOT;
+		for (int j = this.rootsMatrix.firstSlot(); j != RootsMatrix.NULL_SLOT; 
+				j = this.rootsMatrix.nextSlot(j + 1)) {
+			if (j != i) {
+				setIfNearer(i, j, this.rootsMatrix.getElement(i, j));
+			}
+		}
+	}
+
+	private void setIfNearer(int i, int j, double proximity) {
+		double nearest = this.nearestProximities[i];
+		// NaN prevails, as in the minimum (or maximum) of all proximities
+		if ((this.nearestSlots[i] == RootsMatrix.NULL_SLOT) || 
+				(Double.isNaN(proximity) && !Double.isNaN(nearest)) || 
+				(this.isDistanceBased ? (proximity < nearest) : 
+										(proximity > nearest))) {
+			this.nearestProximities[i] = proximity;
+			this.nearestSlots[i] = j;
+		}
+	}
+
+	private void updateInternalProximities(Dendrogram[] superclusters) {
+		for (int n = 0; n < superclusters.length; n ++) {
+			updateInternalProximities(superclusters[n]);
+		}
+	}
+
+	void updateInternalProximities(Dendrogram root) {
+		int numSubroots = root.numberOfSubroots();
+		if (numSubroots > 2) {
+			double rootTopHeight = this.isDistanceBased ? 
+					Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			for (int i = 0; i < numSubroots - 1; i ++) {
+				Dendrogram subrI = root.getSubroot(i);
+				for (int j = i + 1; j < numSubroots; j ++) {
+					Dendrogram subrJ = root.getSubroot(j);
+					double proximity = rootsProximity(subrI, subrJ);
+					rootTopHeight = this.isDistanceBased ? 
+						Math.max(rootTopHeight, proximity) : 
+						Math.min(rootTopHeight, proximity);
+				}
+			}
+			root.setRootTopHeight(rootTopHeight);
+			double rootInternalHeight = calculateInternalProximity(root);
+			root.setRootInternalHeight(rootInternalHeight);
+		}
+	}
+
+	private void updateProximities(Dendrogram[] superclusters) {
+		// Only the proximities of the superclusters change. Each one only 
+		// reads proximities between its own subroots and those of the other 
+		// root, which are the ones overwritten.
+		int numSlots = this.rootsMatrix.numberOfSlots();
+		boolean isParallel = (this.pool != null) && 
+				!this.rootsMatrix.isSparse() && 
+				(this.rootsMatrix.numberOfRoots() > MIN_TASK_SLOTS);
+		for (int n = 0; n < superclusters.length; n ++) {
+			Dendrogram supercluster = superclusters[n];
+			int slot = this.rootsMatrix.getSlot(supercluster);
+			if (isParallel) {
+				this.pool.invoke(new ProximitiesTask(supercluster, slot, 0, 
+						numSlots));
+			} else {
+				updateProximities(supercluster, slot, 0, numSlots);
+			}
+		}
+	}
+
+	private void updateProximities(Dendrogram supercluster, int i, 
+			int fromSlot, int toSlot) {
+		for (int j = this.rootsMatrix.nextSlot(fromSlot); 
+				(j != RootsMatrix.NULL_SLOT) && (j < toSlot); 
+				j = this.rootsMatrix.nextSlot(j + 1)) {
+			Dendrogram root = this.rootsMatrix.getRoot(j);
+			double proximity;
+			if (j < i) {
+				if (root.isSupercluster()) {
+					// Already calculated
+					continue;
 				}
-				newMatrix.setElement(i, j, proximity);
+				proximity = calculateProximity(root, supercluster);
+			} else if (j > i) {
+				proximity = calculateProximity(supercluster, root);
+			} else {
+				continue;
 			}
+			this.rootsMatrix.setElement(i, j, proximity);
 		}
-		return newMatrix;
 	}
 
-	private void mapRootsToIndexes() {
-		this.rootsToIndexes = new HashMap<Integer, Integer>();
-		for (int n = 0; n < this.roots.length; n ++) {
-			Dendrogram root = this.roots[n];
-			this.rootsToIndexes.put(root.getIdentifier(), n);
+	private void releaseRoots(Dendrogram[] superclusters) {
+		for (int n = 0; n < superclusters.length; n ++) {
+			Dendrogram supercluster = superclusters[n];
+			int slot = this.rootsMatrix.getSlot(supercluster);
+			for (int s = 0; s < supercluster.numberOfSubroots(); s ++) {
+				int subrootSlot = 
+						this.rootsMatrix.getSlot(supercluster.getSubroot(s));
+				if (subrootSlot != slot) {
+					this.rootsMatrix.releaseRoot(subrootSlot);
+				}
+			}
 		}
 	}
 
+	private class ProximitiesTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Dendrogram supercluster;
+		private final int slot;
+		private final int fromSlot;
+		private final int toSlot;
+
+		public ProximitiesTask(Dendrogram supercluster, int slot, 
+				int fromSlot, int toSlot) {
+			this.supercluster = supercluster;
+			this.slot = slot;
+			this.fromSlot = fromSlot;
+			this.toSlot = toSlot;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.toSlot - this.fromSlot <= MIN_TASK_SLOTS) {
+				updateProximities(this.supercluster, this.slot, this.fromSlot, 
+						this.toSlot);
+			} else {
+				int middleSlot = (this.fromSlot + this.toSlot) >>> 1;
+				invokeAll(new ProximitiesTask(this.supercluster, this.slot, 
+								this.fromSlot, middleSlot), 
+						new ProximitiesTask(this.supercluster, this.slot, 
+								middleSlot, this.toSlot));
+			}
+		}
+
+	}
+
 	protected double rootsProximity(Dendrogram root1, Dendrogram root2) {
-		int index1 = this.rootsToIndexes.get(root1.getIdentifier());
-		int index2 = this.rootsToIndexes.get(root2.getIdentifier());
-		return this.rootsMatrix.getElement(index1, index2);
+		int slot1 = this.rootsMatrix.getSlot(root1);
+		int slot2 = this.rootsMatrix.getSlot(root2);
+		return this.rootsMatrix.getElement(slot1, slot2);
+	}
+
+	protected int numberOfSlots() {
+		return this.rootsMatrix.numberOfSlots();
+	}
+
+	protected boolean isRootSlot(int slot) {
+		return this.rootsMatrix.isActive(slot);
+	}
+
+	// Slot of a root, or of a former root, which a supercluster shares with 
+	// its first subroot
+	protected int rootsSlot(Dendrogram root) {
+		return this.rootsMatrix.getSlot(root);
+	}
+
+	protected double slotsProximity(int slot1, int slot2) {
+		return this.rootsMatrix.getElement(slot1, slot2);
 	}
 
 	protected abstract double calculateProximity(Dendrogram cI, Dendrogram cJ);
@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.clusterings;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.utils.MathUtils;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Nearest-neighbor chain agglomeration for reducible linkages. Each iteration
+ * follows the chain of nearest neighbors until it finds a group of roots
+ * whose proximities are tied at the given precision and no closer than any
+ * other root, and merges the whole group into a supercluster. Once all the
+ * roots are merged, the groups are merged again level by level, so the result
+ * is the same multidendrogram, with the same proximities, obtained scanning
+ * all the roots proximities
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class NearestNeighborChain {
+
+	private static final int NULL_SLOT = RootsMatrix.NULL_SLOT;
+
+	private final HierarchicalClustering clustering;
+	private final boolean isDistanceBased;
+	private final double levelFactor;
+
+	// Roots by slot and their proximities, updated in place
+	private final RootsMatrix rootsMatrix;
+
+	// Chain of slots, each one the nearest neighbor of the previous one
+	private final int[] chain;
+	private final boolean[] isInChain;
+	private int chainSize = 0;
+
+	// Group of tied roots, and its breadth-first search tree
+	private final int[] group;
+	private final int[] parents;
+	private final boolean[] isInGroup;
+	private int groupSize = 0;
+	private double groupProximity;
+	private final int[] path;
+
+	// New supercluster proximities
+	private final double[] newProximities;
+
+	public NearestNeighborChain(HierarchicalClustering clustering,
+			RootsMatrix rootsMatrix, boolean isDistanceBased, int precision) {
+		this.clustering = clustering;
+		this.isDistanceBased = isDistanceBased;
+		this.levelFactor = MathUtils.factor(precision);
+		this.rootsMatrix = rootsMatrix;
+		int numSlots = rootsMatrix.numberOfSlots();
+		for (int s = rootsMatrix.firstSlot(); s != NULL_SLOT; 
+				s = rootsMatrix.nextSlot(s + 1)) {
+			rootsMatrix.getRoot(s).setSupercluster(false);
+		}
+		this.chain = new int[numSlots];
+		this.isInChain = new boolean[numSlots];
+		this.group = new int[numSlots];
+		this.parents = new int[numSlots];
+		this.isInGroup = new boolean[numSlots];
+		this.path = new int[numSlots];
+		this.newProximities = new double[numSlots];
+	}
+
+	// False if the supercluster found is not reducible
+	public boolean iteration() {
+		boolean merged = (this.rootsMatrix.numberOfRoots() < 2);
+		while (!merged) {
+			if (this.chainSize == 0) {
+				push(this.rootsMatrix.firstSlot());
+			}
+			int top = this.chain[this.chainSize - 1];
+			int previous = (this.chainSize > 1) ? 
+					this.chain[this.chainSize - 2] : NULL_SLOT;
+			int nearest = nearestNeighbor(top, previous);
+			if (nearest != previous) {
+				while (this.isInChain[nearest]) {
+					pop();
+				}
+				push(nearest);
+			} else {
+				int closerSlot = findGroup(proximity(top, previous));
+				if (closerSlot == NULL_SLOT) {
+					if (!mergeGroup()) {
+						return false;
+					}
+					merged = true;
+				} else {
+					extendChain(closerSlot);
+				}
+			}
+		}
+		return true;
+	}
+
+	private int nearestNeighbor(int slot, int previous) {
+		int nearest = NULL_SLOT;
+		long nearestLevel = 0;
+		for (int s = this.rootsMatrix.firstSlot(); s != NULL_SLOT; 
+				s = this.rootsMatrix.nextSlot(s + 1)) {
+			if (s != slot) {
+				long level = level(proximity(slot, s));
+				if (nearest == NULL_SLOT) {
+					nearest = s;
+					nearestLevel = level;
+				} else {
+					int cmp = compareLevels(level, nearestLevel);
+					// Ties are broken in favor of the previous slot in the chain
+					if ((cmp < 0) || ((cmp == 0) && (s == previous))) {
+						nearest = s;
+						nearestLevel = level;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	private int findGroup(double proximity) {
+		long groupLevel = level(proximity);
+		this.groupProximity = proximity;
+		// Sources: the end of the chain linked at the same level
+		addToGroup(this.chain[this.chainSize - 1], NULL_SLOT);
+		for (int k = this.chainSize - 2; k >= 0; k --) {
+			double link = proximity(this.chain[k], this.chain[k + 1]);
+			if (compareLevels(level(link), groupLevel) != 0) {
+				break;
+			}
+			addToGroup(this.chain[k], NULL_SLOT);
+		}
+		// Breadth-first search of tied roots, stopping at the first member
+		// with a closer root
+		for (int g = 0; g < this.groupSize; g ++) {
+			int member = this.group[g];
+			for (int s = this.rootsMatrix.firstSlot(); s != NULL_SLOT; 
+					s = this.rootsMatrix.nextSlot(s + 1)) {
+				if (s != member) {
+					double prox = proximity(member, s);
+					int cmp = compareLevels(level(prox), groupLevel);
+					if (cmp < 0) {
+						return member;
+					} else if (cmp == 0) {
+						if (this.isDistanceBased ? (prox < this.groupProximity) : 
+								(prox > this.groupProximity)) {
+							this.groupProximity = prox;
+						}
+						if (!this.isInGroup[s]) {
+							addToGroup(s, member);
+						}
+					}
+				}
+			}
+		}
+		return NULL_SLOT;
+	}
+
+	private void addToGroup(int slot, int parent) {
+		this.group[this.groupSize] = slot;
+		this.parents[slot] = parent;
+		this.isInGroup[slot] = true;
+		this.groupSize ++;
+	}
+
+	private void clearGroup() {
+		for (int g = 0; g < this.groupSize; g ++) {
+			this.isInGroup[this.group[g]] = false;
+		}
+		this.groupSize = 0;
+	}
+
+	private void extendChain(int closerSlot) {
+		// Path of tied roots from the chain to the root with a closer neighbor
+		int pathLength = 0;
+		int s = closerSlot;
+		while (this.parents[s] != NULL_SLOT) {
+			this.path[pathLength] = s;
+			pathLength ++;
+			s = this.parents[s];
+		}
+		while (this.chain[this.chainSize - 1] != s) {
+			pop();
+		}
+		for (int p = pathLength - 1; p >= 0; p --) {
+			push(this.path[p]);
+		}
+		clearGroup();
+	}
+
+	private boolean mergeGroup() {
+		Arrays.sort(this.group, 0, this.groupSize);
+		Dendrogram supercluster = 
+				this.clustering.newSupercluster(this.groupProximity);
+		for (int g = 0; g < this.groupSize; g ++) {
+			supercluster.addSubcluster(this.rootsMatrix.getRoot(this.group[g]));
+		}
+		this.clustering.updateInternalProximities(supercluster);
+		if (!this.clustering.isReducible(supercluster)) {
+			return false;
+		}
+		// Proximities to the other roots, keeping the order of the arguments
+		// of the variable-group algorithm
+		int superSlot = this.group[0];
+		for (int s = this.rootsMatrix.firstSlot(); s != NULL_SLOT; 
+				s = this.rootsMatrix.nextSlot(s + 1)) {
+			Dendrogram root = this.rootsMatrix.getRoot(s);
+			if (!this.isInGroup[s]) {
+				this.newProximities[s] = (s < superSlot) ? 
+						this.clustering.calculateProximity(root, supercluster) : 
+						this.clustering.calculateProximity(supercluster, root);
+			}
+		}
+		supercluster.setSupercluster(false);
+		for (int g = 1; g < this.groupSize; g ++) {
+			this.rootsMatrix.removeRoot(this.group[g]);
+		}
+		this.rootsMatrix.setRoot(superSlot, supercluster);
+		for (int s = this.rootsMatrix.firstSlot(); s != NULL_SLOT; 
+				s = this.rootsMatrix.nextSlot(s + 1)) {
+			if (s != superSlot) {
+				this.rootsMatrix.setElement(superSlot, s, 
+						this.newProximities[s]);
+			}
+		}
+		for (int g = 1; g < this.groupSize; g ++) {
+			this.rootsMatrix.releaseRoot(this.group[g]);
+		}
+		while ((this.chainSize > 0) && 
+				this.isInGroup[this.chain[this.chainSize - 1]]) {
+			pop();
+		}
+		clearGroup();
+		return true;
+	}
+
+	// Between iterations only the chain is kept
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(this.chainSize);
+		for (int k = 0; k < this.chainSize; k ++) {
+			out.writeInt(this.chain[k]);
+		}
+	}
+
+	public void read(DataInput in) throws IOException {
+		while (this.chainSize > 0) {
+			pop();
+		}
+		int chainSize = in.readInt();
+		for (int k = 0; k < chainSize; k ++) {
+			int slot = in.readInt();
+			if ((slot < 0) || (slot >= this.chain.length) || 
+					!this.rootsMatrix.isActive(slot) || this.isInChain[slot]) {
+				throw new IOException("Wrong chain slot: " + slot);
+			}
+			push(slot);
+		}
+	}
+
+	private void push(int slot) {
+		this.chain[this.chainSize] = slot;
+		this.isInChain[slot] = true;
+		this.chainSize ++;
+	}
+
+	private void pop() {
+		this.chainSize --;
+		this.isInChain[this.chain[this.chainSize]] = false;
+	}
+
+	private double proximity(int slot1, int slot2) {
+		return this.rootsMatrix.getElement(slot1, slot2);
+	}
+
+	private long level(double proximity) {
+		return MathUtils.quantize(proximity, this.levelFactor);
+	}
+
+	private int compareLevels(long level1, long level2) {
+		if (level1 == level2) {
+			return 0;
+		} else if (this.isDistanceBased ? (level1 < level2) : (level1 > level2)) {
+			return -1;
+		} else {
+			return +1;
+		}
+	}
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.core.clusterings;
+
+import multidendrograms.core.definitions.Dendrogram;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Priority queue of the roots by the proximity to their nearest following 
+ * root, for the variable-group agglomeration of any linkage. When the 
+ * nearest root of a slot is merged, its proximity is kept as a bound and 
+ * the nearest root is only searched again when the slot reaches the top of 
+ * the queue. All the slots tied at the top are extracted together, so the 
+ * superclusters are the same ones of the variable-group engine
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class NearestQueue {
+
+	private static final int NULL_SLOT = RootsMatrix.NULL_SLOT;
+	private static final int NULL_POSITION = -1;
+
+	private final HierarchicalClustering clustering;
+	private final RootsMatrix rootsMatrix;
+	private final boolean isDistanceBased;
+
+	// Nearest root of each slot among the following ones, which may be 
+	// farther than the proximity if the slot is stale
+	private final double[] nearestProximities;
+	private final int[] nearestSlots;
+	private final boolean[] isStale;
+
+	// Binary heap of the slots, nearest first, and position of each slot
+	private final int[] heap;
+	private final int[] positions;
+	private int heapSize = 0;
+
+	// Slots extracted at the top of the queue, and superclusters of the 
+	// last iteration
+	private final boolean[] isTied;
+	private final boolean[] isNew;
+
+	public NearestQueue(HierarchicalClustering clustering, 
+			RootsMatrix rootsMatrix, boolean isDistanceBased) {
+		this.clustering = clustering;
+		this.rootsMatrix = rootsMatrix;
+		this.isDistanceBased = isDistanceBased;
+		int numSlots = rootsMatrix.numberOfSlots();
+		this.nearestProximities = new double[numSlots];
+		this.nearestSlots = new int[numSlots];
+		this.isStale = new boolean[numSlots];
+		this.heap = new int[numSlots];
+		this.positions = new int[numSlots];
+		this.isTied = new boolean[numSlots];
+		this.isNew = new boolean[numSlots];
+		for (int s = 0; s < numSlots; s ++) {
+			this.positions[s] = NULL_POSITION;
+		}
+		for (int i = rootsMatrix.firstSlot(); i != NULL_SLOT; 
+				i = rootsMatrix.nextSlot(i + 1)) {
+			findNearestRoot(i);
+			place(i);
+		}
+	}
+
+	// Proximity of the roots merged by the next iteration
+	public double nearestProximity() {
+		refreshTop();
+		return this.nearestProximities[this.heap[0]];
+	}
+
+	// Extracts the slots whose nearest roots are tied with the given 
+	// proximity, all of them for NaN as in the variable-group engine
+	public void findTiedSlots(double proximity) {
+		if (Double.isNaN(proximity)) {
+			for (int i = this.rootsMatrix.firstSlot(); i != NULL_SLOT; 
+					i = this.rootsMatrix.nextSlot(i + 1)) {
+				this.isTied[i] = true;
+			}
+			return;
+		}
+		long level = this.clustering.level(proximity);
+		refreshTop();
+		while ((this.heapSize > 0) && (this.clustering.level(
+				this.nearestProximities[this.heap[0]]) == level)) {
+			int i = this.heap[0];
+			remove(i);
+			this.isTied[i] = true;
+			refreshTop();
+		}
+	}
+
+	public boolean isTied(int slot) {
+		return this.isTied[slot];
+	}
+
+	// Only the proximities to the superclusters have changed. The nearest 
+	// roots of the other slots are kept if they are not merged, since the 
+	// remaining proximities are not nearer.
+	public void update(Dendrogram[] superclusters) {
+		int[] newSlots = new int[superclusters.length];
+		for (int n = 0; n < superclusters.length; n ++) {
+			Dendrogram supercluster = superclusters[n];
+			int slot = this.rootsMatrix.getSlot(supercluster);
+			newSlots[n] = slot;
+			this.isNew[slot] = true;
+			for (int s = 0; s < supercluster.numberOfSubroots(); s ++) {
+				int subrootSlot = 
+						this.rootsMatrix.getSlot(supercluster.getSubroot(s));
+				if (subrootSlot != slot) {
+					remove(subrootSlot);
+					this.isTied[subrootSlot] = false;
+				}
+			}
+		}
+		for (int i = this.rootsMatrix.firstSlot(); i != NULL_SLOT; 
+				i = this.rootsMatrix.nextSlot(i + 1)) {
+			if (this.isNew[i] || this.isTied[i] || 
+					(this.positions[i] == NULL_POSITION)) {
+				findNearestRoot(i);
+			} else {
+				for (int n = 0; n < newSlots.length; n ++) {
+					int j = newSlots[n];
+					if (j > i) {
+						double proximity = this.rootsMatrix.getElement(i, j);
+						if (isNearer(proximity, this.nearestProximities[i])) {
+							// Not farther than any other following root
+							this.nearestProximities[i] = proximity;
+							this.nearestSlots[i] = j;
+							this.isStale[i] = false;
+						} else if (this.nearestSlots[i] == j) {
+							this.isStale[i] = true;
+						}
+					}
+				}
+				if (!this.rootsMatrix.isActive(this.nearestSlots[i])) {
+					this.isStale[i] = true;
+				}
+			}
+			place(i);
+			this.isTied[i] = false;
+		}
+		for (int n = 0; n < newSlots.length; n ++) {
+			this.isNew[newSlots[n]] = false;
+		}
+	}
+
+	// Searches again the nearest roots of the stale slots at the top
+	private void refreshTop() {
+		while ((this.heapSize > 0) && this.isStale[this.heap[0]]) {
+			int i = this.heap[0];
+			findNearestRoot(i);
+			place(i);
+		}
+	}
+
+	private void findNearestRoot(int i) {
+		this.nearestProximities[i] = Double.NaN;
+		this.nearestSlots[i] = NULL_SLOT;
+		this.isStale[i] = false;
+		for (int j = this.rootsMatrix.nextSlot(i + 1); j != NULL_SLOT; 
+				j = this.rootsMatrix.nextSlot(j + 1)) {
+			double proximity = this.rootsMatrix.getElement(i, j);
+			if ((this.nearestSlots[i] == NULL_SLOT) || 
+					isNearer(proximity, this.nearestProximities[i])) {
+				this.nearestProximities[i] = proximity;
+				this.nearestSlots[i] = j;
+			}
+		}
+	}
+
+	// NaN prevails, as in the minimum (or maximum) of all proximities
+	private boolean isNearer(double proximity1, double proximity2) {
+		if (Double.isNaN(proximity1) || Double.isNaN(proximity2)) {
+			return Double.isNaN(proximity1) && !Double.isNaN(proximity2);
+		}
+		return this.isDistanceBased ? (proximity1 < proximity2) : 
+									  (proximity1 > proximity2);
+	}
+
+	// Slots without following roots are not queued
+	private void place(int i) {
+		if (this.nearestSlots[i] == NULL_SLOT) {
+			remove(i);
+		} else if (this.positions[i] == NULL_POSITION) {
+			this.heap[this.heapSize] = i;
+			this.positions[i] = this.heapSize;
+			this.heapSize ++;
+			siftUp(this.heapSize - 1);
+		} else {
+			siftDown(siftUp(this.positions[i]));
+		}
+	}
+
+	private void remove(int i) {
+		int position = this.positions[i];
+		if (position == NULL_POSITION) {
+			return;
+		}
+		this.positions[i] = NULL_POSITION;
+		this.heapSize --;
+		if (position < this.heapSize) {
+			int last = this.heap[this.heapSize];
+			this.heap[position] = last;
+			this.positions[last] = position;
+			siftDown(siftUp(position));
+		}
+	}
+
+	private int siftUp(int position) {
+		int slot = this.heap[position];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!isNearer(this.nearestProximities[slot], 
+					this.nearestProximities[this.heap[parent]])) {
+				break;
+			}
+			this.heap[position] = this.heap[parent];
+			this.positions[this.heap[position]] = position;
+			position = parent;
+		}
+		this.heap[position] = slot;
+		this.positions[slot] = position;
+		return position;
+	}
+
+	private void siftDown(int position) {
+		int slot = this.heap[position];
+		while (2 * position + 1 < this.heapSize) {
+			int child = 2 * position + 1;
+			if ((child + 1 < this.heapSize) && 
+					isNearer(this.nearestProximities[this.heap[child + 1]], 
+							this.nearestProximities[this.heap[child]])) {
+				child ++;
+			}
+			if (!isNearer(this.nearestProximities[this.heap[child]], 
+					this.nearestProximities[slot])) {
+				break;
+			}
+			this.heap[position] = this.heap[child];
+			this.positions[this.heap[position]] = position;
+			position = child;
+		}
+		this.heap[position] = slot;
+		this.positions[slot] = position;
+	}
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.clusterings;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.DendrogramStore;
+import multidendrograms.core.definitions.MatrixStorage;
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.core.definitions.SymmetricMatrix;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Proximities between the roots of a clustering, updated in place. Each root
+ * occupies a slot, a supercluster takes the lowest slot of its subroots and
+ * the other slots are deactivated, so the active slots keep the order of the
+ * roots and the matrix is never reallocated
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class RootsMatrix {
+
+	public static final int NULL_SLOT = -1;
+
+	private final Dendrogram[] roots;
+	// Slot of each cluster, by identifier, kept after it stops being a root
+	private final int[] clustersToSlots;
+	private final BitSet active;
+	private int numRoots;
+	// Lower triangular elements by rows, with the storage of the input matrix.
+	// Heap storages are accessed directly as arrays.
+	private final double[] lowerTriangle;
+	private final float[] floatLowerTriangle;
+	private final MatrixStorage storageLowerTriangle;
+	private final boolean isSparse;
+	private double missingValue = Double.NaN;
+
+	// Sparse input matrices remain sparse only if requested, otherwise their
+	// missing values are stored
+	public RootsMatrix(Dendrogram[] leaves, SymmetricMatrix proximityMatrix, 
+			boolean isSparse) {
+		int numSlots = leaves.length;
+		this.roots = new Dendrogram[numSlots];
+		// Identifiers of leaves and superclusters start at 1
+		this.clustersToSlots = new int[2 * numSlots];
+		this.active = new BitSet(numSlots);
+		long numElements = (long)numSlots * (numSlots - 1) / 2;
+		StorageType storageType = proximityMatrix.getStorageType();
+		this.isSparse = isSparse && storageType.equals(StorageType.SPARSE);
+		if (storageType.equals(StorageType.SPARSE) && !this.isSparse) {
+			storageType = StorageType.DOUBLE;
+		} else if (storageType.equals(StorageType.LAZY)) {
+			// Updated proximities are stored out of the heap
+			storageType = StorageType.MAPPED;
+		}
+		if (storageType.equals(StorageType.DOUBLE)) {
+			this.lowerTriangle = 
+					new double[MatrixStorage.arrayLength(numElements)];
+			this.floatLowerTriangle = null;
+			this.storageLowerTriangle = null;
+		} else if (storageType.equals(StorageType.FLOAT)) {
+			this.lowerTriangle = null;
+			this.floatLowerTriangle = 
+					new float[MatrixStorage.arrayLength(numElements)];
+			this.storageLowerTriangle = null;
+		} else {
+			this.lowerTriangle = null;
+			this.floatLowerTriangle = null;
+			this.storageLowerTriangle = 
+					MatrixStorage.newStorage(storageType, numElements);
+		}
+		reset(leaves, proximityMatrix);
+	}
+
+	public void reset(Dendrogram[] leaves, SymmetricMatrix proximityMatrix) {
+		int numSlots = this.roots.length;
+		Arrays.fill(this.clustersToSlots, NULL_SLOT);
+		for (int s = 0; s < numSlots; s ++) {
+			setRoot(s, leaves[s]);
+		}
+		this.active.set(0, numSlots);
+		this.numRoots = numSlots;
+		if (this.isSparse) {
+			this.missingValue = proximityMatrix.getMissingValue();
+			this.storageLowerTriangle.fill(this.missingValue);
+			int[][] elements = proximityMatrix.storedElements();
+			for (int k = 0; k < elements[0].length; k ++) {
+				int i = elements[0][k];
+				int j = elements[1][k];
+				setElement(index(i, j), proximityMatrix.getElement(i, j));
+			}
+		} else {
+			long index = 0;
+			for (int i = 1; i < numSlots; i ++) {
+				for (int j = 0; j < i; j ++) {
+					setElement(index, proximityMatrix.getElement(i, j));
+					index ++;
+				}
+			}
+		}
+	}
+
+	// Roots, slots of all the clusters and proximities between the roots, 
+	// the only ones read by the following iterations
+	public void write(DataOutput out) throws IOException {
+		int numSlots = this.roots.length;
+		out.writeInt(numSlots);
+		for (int s = 0; s < numSlots; s ++) {
+			out.writeInt((this.roots[s] == null) ? 0 : this.roots[s].getIdentifier());
+		}
+		for (int c = 0; c < this.clustersToSlots.length; c ++) {
+			out.writeInt(this.clustersToSlots[c]);
+		}
+		for (int i = firstSlot(); i != NULL_SLOT; i = nextSlot(i + 1)) {
+			for (int j = firstSlot(); j < i; j = nextSlot(j + 1)) {
+				double value = getElement(i, j);
+				if (this.isSparse) {
+					// Only the stored proximities
+					if (Double.doubleToLongBits(value) != 
+							Double.doubleToLongBits(this.missingValue)) {
+						out.writeInt(i);
+						out.writeInt(j);
+						out.writeDouble(value);
+					}
+				} else {
+					out.writeDouble(value);
+				}
+			}
+		}
+		if (this.isSparse) {
+			out.writeInt(NULL_SLOT);
+		}
+	}
+
+	// Clusters are found in the store by identifier, which is the node plus 1
+	public void read(DataInput in, DendrogramStore store) throws IOException {
+		int numSlots = in.readInt();
+		if (numSlots != this.roots.length) {
+			throw new IOException("Wrong number of roots: " + numSlots);
+		}
+		if (this.isSparse) {
+			this.storageLowerTriangle.fill(this.missingValue);
+		}
+		this.active.clear();
+		this.numRoots = 0;
+		for (int s = 0; s < numSlots; s ++) {
+			int identifier = in.readInt();
+			if (identifier == 0) {
+				this.roots[s] = null;
+			} else {
+				if ((identifier < 0) || (identifier > store.numberOfNodes()) || 
+						(store.getDendrogram(identifier - 1).getIdentifier() != 
+						 identifier)) {
+					throw new IOException("Wrong root identifier: " + identifier);
+				}
+				this.roots[s] = store.getDendrogram(identifier - 1);
+				this.active.set(s);
+				this.numRoots ++;
+			}
+		}
+		for (int c = 0; c < this.clustersToSlots.length; c ++) {
+			this.clustersToSlots[c] = in.readInt();
+		}
+		if (this.isSparse) {
+			for (int i = in.readInt(); i != NULL_SLOT; i = in.readInt()) {
+				int j = in.readInt();
+				setElement(index(i, j), in.readDouble());
+			}
+		} else {
+			for (int i = firstSlot(); i != NULL_SLOT; i = nextSlot(i + 1)) {
+				for (int j = firstSlot(); j < i; j = nextSlot(j + 1)) {
+					setElement(index(i, j), in.readDouble());
+				}
+			}
+		}
+	}
+
+	// Sparse matrices are not safe for concurrent updates
+	public boolean isSparse() {
+		return this.isSparse;
+	}
+
+	public int numberOfSlots() {
+		return this.roots.length;
+	}
+
+	public int numberOfRoots() {
+		return this.numRoots;
+	}
+
+	public int firstSlot() {
+		return nextSlot(0);
+	}
+
+	// First active slot from the given one, or NULL_SLOT
+	public int nextSlot(int slot) {
+		int next = this.active.nextSetBit(slot);
+		return (next < 0) ? NULL_SLOT : next;
+	}
+
+	public boolean isActive(int slot) {
+		return this.active.get(slot);
+	}
+
+	public Dendrogram getRoot(int slot) {
+		return this.roots[slot];
+	}
+
+	public void setRoot(int slot, Dendrogram root) {
+		this.roots[slot] = root;
+		this.clustersToSlots[root.getIdentifier()] = slot;
+	}
+
+	public int getSlot(Dendrogram cluster) {
+		return this.clustersToSlots[cluster.getIdentifier()];
+	}
+
+	// The proximities of a removed slot remain available until it is reset
+	// or released
+	public void removeRoot(int slot) {
+		this.roots[slot] = null;
+		this.active.clear(slot);
+		this.numRoots --;
+	}
+
+	// Drops the proximities of a removed slot from a sparse matrix
+	public void releaseRoot(int slot) {
+		if (this.isSparse) {
+			for (int s = 0; s < this.roots.length; s ++) {
+				if (s != slot) {
+					setElement(index(slot, s), this.missingValue);
+				}
+			}
+		}
+	}
+
+	public double getElement(int slot1, int slot2) {
+		long index = index(slot1, slot2);
+		if (this.lowerTriangle != null) {
+			return this.lowerTriangle[(int)index];
+		} else if (this.floatLowerTriangle != null) {
+			return this.floatLowerTriangle[(int)index];
+		} else {
+			return this.storageLowerTriangle.get(index);
+		}
+	}
+
+	public void setElement(int slot1, int slot2, double value) {
+		setElement(index(slot1, slot2), value);
+	}
+
+	private void setElement(long index, double value) {
+		if (this.lowerTriangle != null) {
+			this.lowerTriangle[(int)index] = value;
+		} else if (this.floatLowerTriangle != null) {
+			this.floatLowerTriangle[(int)index] = (float)value;
+		} else {
+			this.storageLowerTriangle.set(index, value);
+		}
+	}
+
+	private long index(int i, int j) {
+		if (i < j) {
+			int aux = i;
+			i = j;
+			j = aux;
+		}
+		return (long)i * (i - 1) / 2 + j;
+	}
+
+}
@@ -0,0 +1,482 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.core.clusterings;
+
+import java.util.Arrays;
+
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.SymmetricMatrix;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Spanning tree agglomeration for linkages whose proximity between roots is 
+ * the nearest proximity between their elements. The tree of nearest 
+ * proximities is built by Prim's algorithm, or by Kruskal's algorithm for 
+ * sparse matrices, and each iteration joins the roots linked by the edges 
+ * tied with the nearest remaining one, so the result is the same 
+ * multidendrogram obtained by the variable-group algorithm
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class SpanningTree {
+
+	private static final int NULL_ELEMENT = -1;
+
+	private final HierarchicalClustering clustering;
+	private final SymmetricMatrix proximityMatrix;
+	private final boolean isDistanceBased;
+	private final int numElements;
+
+	// Edges of the tree, from the nearest proximity
+	private final int[] sources;
+	private final int[] targets;
+	private final double[] weights;
+	private int numEdges = 0;
+	private int nextEdge = 0;
+
+	// Roots by their first element, which represents their elements in a 
+	// disjoint-set forest. The elements of each root are linked in order of 
+	// their first elements.
+	private final Dendrogram[] roots;
+	private final int[] parents;
+	private final int[] nextElements;
+	private final int[] lastElements;
+	private int numRoots;
+
+	// Roots merged in an iteration, and their elements by subroots
+	private final int[] merged;
+	private final boolean[] isMerged;
+	private final double[] internalProximities;
+	private final int[] elements;
+	private final int[] subrootStarts;
+
+	public SpanningTree(HierarchicalClustering clustering, 
+			Dendrogram[] leaves, SymmetricMatrix proximityMatrix, 
+			boolean isDistanceBased) {
+		this.clustering = clustering;
+		this.proximityMatrix = proximityMatrix;
+		this.isDistanceBased = isDistanceBased;
+		int n = leaves.length;
+		this.numElements = n;
+		this.sources = new int[Math.max(n - 1, 0)];
+		this.targets = new int[Math.max(n - 1, 0)];
+		this.weights = new double[Math.max(n - 1, 0)];
+		this.roots = new Dendrogram[n];
+		this.parents = new int[n];
+		this.nextElements = new int[n];
+		this.lastElements = new int[n];
+		for (int i = 0; i < n; i ++) {
+			this.roots[i] = leaves[i];
+			leaves[i].setSupercluster(false);
+			this.parents[i] = i;
+			this.nextElements[i] = NULL_ELEMENT;
+			this.lastElements[i] = i;
+		}
+		this.numRoots = n;
+		this.merged = new int[n];
+		this.isMerged = new boolean[n];
+		this.internalProximities = new double[n];
+		Arrays.fill(this.internalProximities, Double.NaN);
+		this.elements = new int[n];
+		this.subrootStarts = new int[n + 1];
+		if (proximityMatrix.isSparse()) {
+			kruskalEdges();
+		} else {
+			primEdges();
+		}
+	}
+
+	public int numberOfRoots() {
+		return this.numRoots;
+	}
+
+	// The root of the first element
+	public Dendrogram getRoot() {
+		return this.roots[0];
+	}
+
+	// Roots by their first elements
+	public Dendrogram[] getRoots() {
+		Dendrogram[] forest = new Dendrogram[this.numRoots];
+		int r = 0;
+		for (int i = 0; i < this.numElements; i ++) {
+			if (this.roots[i] != null) {
+				forest[r] = this.roots[i];
+				r ++;
+			}
+		}
+		return forest;
+	}
+
+	// Proximity of the next edge, where the next iteration merges roots
+	public double nextProximity() {
+		return this.weights[this.nextEdge];
+	}
+
+	public void iteration() {
+		if (this.numRoots < 2) {
+			return;
+		}
+		double proximity = this.weights[this.nextEdge];
+		long level = this.clustering.level(proximity);
+		int lastEdge = this.nextEdge;
+		while ((lastEdge < this.numEdges) && 
+				(this.clustering.level(this.weights[lastEdge]) == level)) {
+			lastEdge ++;
+		}
+		// Roots linked by the tied edges, grouped under their first root
+		int numMerged = 0;
+		for (int e = this.nextEdge; e < lastEdge; e ++) {
+			numMerged = addMerged(find(this.sources[e]), numMerged);
+			numMerged = addMerged(find(this.targets[e]), numMerged);
+		}
+		for (int e = this.nextEdge; e < lastEdge; e ++) {
+			union(find(this.sources[e]), find(this.targets[e]));
+		}
+		for (int e = this.nextEdge; e < lastEdge; e ++) {
+			int group = find(this.sources[e]);
+			if (Double.isNaN(this.internalProximities[group])) {
+				this.internalProximities[group] = this.weights[e];
+			}
+		}
+		this.nextEdge = lastEdge;
+		// Superclusters, in order of their first elements
+		Arrays.sort(this.merged, 0, numMerged);
+		for (int m = 0; m < numMerged; m ++) {
+			int slot = this.merged[m];
+			int group = find(slot);
+			Dendrogram root = this.roots[slot];
+			if (group == slot) {
+				this.roots[group] = this.clustering.newSupercluster(proximity);
+			} else {
+				this.roots[slot] = null;
+				this.nextElements[this.lastElements[group]] = slot;
+				this.lastElements[group] = this.lastElements[slot];
+				this.numRoots --;
+			}
+			this.roots[group].addSubcluster(root);
+		}
+		for (int m = 0; m < numMerged; m ++) {
+			int slot = this.merged[m];
+			if (find(slot) == slot) {
+				Dendrogram supercluster = this.roots[slot];
+				if (supercluster.numberOfSubclusters() > 2) {
+					supercluster.setRootTopHeight(topProximity(slot, 
+							supercluster.numberOfSubclusters()));
+					supercluster.setRootInternalHeight(
+							this.internalProximities[slot]);
+				}
+				supercluster.setSupercluster(false);
+				this.internalProximities[slot] = Double.NaN;
+			}
+			this.isMerged[slot] = false;
+		}
+	}
+
+	private int addMerged(int slot, int numMerged) {
+		if (!this.isMerged[slot]) {
+			this.isMerged[slot] = true;
+			this.merged[numMerged] = slot;
+			numMerged ++;
+		}
+		return numMerged;
+	}
+
+	// Farthest of the nearest proximities between the subroots of a root
+	private double topProximity(int slot, int numSubroots) {
+		// Elements of each subroot, which start at a merged root
+		int numSubroot = 0;
+		int numElement = 0;
+		for (int i = slot; i != NULL_ELEMENT; i = this.nextElements[i]) {
+			if (this.isMerged[i]) {
+				this.subrootStarts[numSubroot] = numElement;
+				numSubroot ++;
+			}
+			this.elements[numElement] = i;
+			numElement ++;
+		}
+		this.subrootStarts[numSubroot] = numElement;
+		double top = Double.NaN;
+		for (int s = 0; s < numSubroots - 1; s ++) {
+			for (int t = s + 1; t < numSubroots; t ++) {
+				double nearest = nearestProximity(s, t, top);
+				if (Double.isNaN(top) || isNearer(top, nearest)) {
+					top = nearest;
+				}
+			}
+		}
+		return top;
+	}
+
+	// Nearest proximity between two subroots, or any proximity not farther 
+	// than the given bound
+	private double nearestProximity(int subroot1, int subroot2, double bound) {
+		double nearest = Double.NaN;
+		for (int a = this.subrootStarts[subroot1]; 
+				a < this.subrootStarts[subroot1 + 1]; a ++) {
+			for (int b = this.subrootStarts[subroot2]; 
+					b < this.subrootStarts[subroot2 + 1]; b ++) {
+				double proximity = this.proximityMatrix.getElement(
+						this.elements[a], this.elements[b]);
+				if (Double.isNaN(nearest) || isNearer(proximity, nearest)) {
+					nearest = proximity;
+					if (!Double.isNaN(bound) && !isNearer(bound, nearest)) {
+						return nearest;
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+
+	private boolean isNearer(double proximity1, double proximity2) {
+		return this.isDistanceBased ? (proximity1 < proximity2) : 
+									  (proximity1 > proximity2);
+	}
+
+	private int find(int element) {
+		while (this.parents[element] != element) {
+			this.parents[element] = this.parents[this.parents[element]];
+			element = this.parents[element];
+		}
+		return element;
+	}
+
+	// The first element represents the union
+	private void union(int element1, int element2) {
+		if (element1 < element2) {
+			this.parents[element2] = element1;
+		} else if (element2 < element1) {
+			this.parents[element1] = element2;
+		}
+	}
+
+	private void addEdge(int source, int target, double weight) {
+		this.sources[this.numEdges] = source;
+		this.targets[this.numEdges] = target;
+		this.weights[this.numEdges] = weight;
+		this.numEdges ++;
+	}
+
+	private void primEdges() {
+		int n = this.numElements;
+		double[] nearest = new double[n];
+		int[] nearestElements = new int[n];
+		Arrays.fill(nearestElements, NULL_ELEMENT);
+		boolean[] isInTree = new boolean[n];
+		int last = 0;
+		for (int k = 1; k < n; k ++) {
+			isInTree[last] = true;
+			int next = NULL_ELEMENT;
+			for (int i = 0; i < n; i ++) {
+				if (!isInTree[i]) {
+					double proximity = this.proximityMatrix.getElement(last, i);
+					if ((nearestElements[i] == NULL_ELEMENT) || 
+							isNearer(proximity, nearest[i])) {
+						nearest[i] = proximity;
+						nearestElements[i] = last;
+					}
+					if ((next == NULL_ELEMENT) || 
+							isNearer(nearest[i], nearest[next])) {
+						next = i;
+					}
+				}
+			}
+			addEdge(nearestElements[next], next, nearest[next]);
+			last = next;
+		}
+		sortEdges();
+	}
+
+	private void sortEdges() {
+		int[] order = sortedOrder(this.weights, this.numEdges);
+		int[] sortedSources = new int[this.numEdges];
+		int[] sortedTargets = new int[this.numEdges];
+		double[] sortedWeights = new double[this.numEdges];
+		for (int e = 0; e < this.numEdges; e ++) {
+			sortedSources[e] = this.sources[order[e]];
+			sortedTargets[e] = this.targets[order[e]];
+			sortedWeights[e] = this.weights[order[e]];
+		}
+		System.arraycopy(sortedSources, 0, this.sources, 0, this.numEdges);
+		System.arraycopy(sortedTargets, 0, this.targets, 0, this.numEdges);
+		System.arraycopy(sortedWeights, 0, this.weights, 0, this.numEdges);
+	}
+
+	// Positions of the values from the nearest one, ties in order of 
+	// position. Each position is sorted with the rank of its value in the 
+	// high bits of a primitive key.
+	private int[] sortedOrder(double[] values, int size) {
+		double[] distinctValues = Arrays.copyOf(values, size);
+		Arrays.sort(distinctValues);
+		int numDistinct = 0;
+		for (int k = 0; k < size; k ++) {
+			if ((numDistinct == 0) || (Double.compare(distinctValues[k], 
+					distinctValues[numDistinct - 1]) != 0)) {
+				distinctValues[numDistinct] = distinctValues[k];
+				numDistinct ++;
+			}
+		}
+		long[] keys = new long[size];
+		for (int k = 0; k < size; k ++) {
+			int rank = Arrays.binarySearch(distinctValues, 0, numDistinct, 
+					values[k]);
+			if (!this.isDistanceBased) {
+				rank = numDistinct - 1 - rank;
+			}
+			keys[k] = ((long)rank << 32) | k;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[size];
+		for (int k = 0; k < size; k ++) {
+			order[k] = (int)keys[k];
+		}
+		return order;
+	}
+
+	// Stored proximities in order, and the missing value where it joins 
+	// parts of the tree
+	private void kruskalEdges() {
+		int[][] stored = this.proximityMatrix.storedElements();
+		int numStored = stored[0].length;
+		double[] values = new double[numStored];
+		for (int k = 0; k < numStored; k ++) {
+			values[k] = this.proximityMatrix.getElement(stored[0][k], 
+					stored[1][k]);
+		}
+		int[] order = sortedOrder(values, numStored);
+		double missingValue = this.proximityMatrix.getMissingValue();
+		int k = 0;
+		while ((k < numStored) && isNearer(values[order[k]], missingValue)) {
+			addIfJoins(stored[0][order[k]], stored[1][order[k]], 
+					values[order[k]]);
+			k ++;
+		}
+		if (this.numEdges < this.numElements - 1) {
+			joinByMissingValue(stored, missingValue);
+		}
+		while ((k < numStored) && (this.numEdges < this.numElements - 1)) {
+			addIfJoins(stored[0][order[k]], stored[1][order[k]], 
+					values[order[k]]);
+			k ++;
+		}
+		for (int i = 0; i < this.numElements; i ++) {
+			this.parents[i] = i;
+		}
+	}
+
+	private void addIfJoins(int i, int j, double proximity) {
+		int rootI = find(i);
+		int rootJ = find(j);
+		if (rootI != rootJ) {
+			addEdge(i, j, proximity);
+			union(rootI, rootJ);
+		}
+	}
+
+	// Parts of the tree are joined by the missing value unless all the 
+	// proximities between them are stored
+	private void joinByMissingValue(int[][] stored, double missingValue) {
+		int n = this.numElements;
+		int[] sizes = new int[n];
+		for (int i = 0; i < n; i ++) {
+			sizes[find(i)] ++;
+		}
+		// Sorted keys of the pairs of parts of each stored crossing, with 
+		// one key per crossing
+		long[] crossings = new long[stored[0].length];
+		int numCrossings = 0;
+		for (int k = 0; k < stored[0].length; k ++) {
+			int rootI = find(stored[0][k]);
+			int rootJ = find(stored[1][k]);
+			if (rootI != rootJ) {
+				crossings[numCrossings] = pairKey(rootI, rootJ);
+				numCrossings ++;
+			}
+		}
+		Arrays.sort(crossings, 0, numCrossings);
+		// Breadth-first search in the complement of the stored crossings
+		int[] unvisited = new int[n];
+		int numUnvisited = 0;
+		for (int i = 0; i < n; i ++) {
+			if (find(i) == i) {
+				unvisited[numUnvisited] = i;
+				numUnvisited ++;
+			}
+		}
+		int[] queue = new int[numUnvisited];
+		int firstEdge = this.numEdges;
+		while (numUnvisited > 0) {
+			numUnvisited --;
+			int queueStart = 0;
+			int queueEnd = 1;
+			queue[0] = unvisited[numUnvisited];
+			while (queueStart < queueEnd) {
+				int part = queue[queueStart];
+				queueStart ++;
+				int u = 0;
+				while (u < numUnvisited) {
+					int other = unvisited[u];
+					long key = pairKey(part, other);
+					int count = firstKey(crossings, numCrossings, key + 1) - 
+							firstKey(crossings, numCrossings, key);
+					if (count < (long)sizes[part] * sizes[other]) {
+						addEdge(part, other, missingValue);
+						queue[queueEnd] = other;
+						queueEnd ++;
+						numUnvisited --;
+						unvisited[u] = unvisited[numUnvisited];
+					} else {
+						u ++;
+					}
+				}
+			}
+		}
+		for (int e = firstEdge; e < this.numEdges; e ++) {
+			union(find(this.sources[e]), find(this.targets[e]));
+		}
+	}
+
+	private long pairKey(int i, int j) {
+		return (i < j) ? (long)i * this.numElements + j : 
+						 (long)j * this.numElements + i;
+	}
+
+	// Position of the first sorted key not lower than the given one
+	private static int firstKey(long[] keys, int size, long key) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle] < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+}
@@ -18,7 +18,12 @@
 
 package multidendrograms.core.clusterings;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.MatrixStorage;
 import multidendrograms.core.definitions.SymmetricMatrix;
 
 /******************************************************************************
@@ -36,6 +41,11 @@ public class VersatileLinkage extends HierarchicalClustering {
 
 	private boolean isWeighted;
 	private double power;
+	// Powered proximities between slots (their logarithms for the geometric 
+	// mean), lower triangle by rows. The sums of a new supercluster are kept, 
+	// so that its proximities are not powered back.
+	private boolean isCached = false;
+	private double[] poweredProximities = null;
 
 	public VersatileLinkage(SymmetricMatrix proximityMatrix, String[] labels, 
 			boolean isDistanceBased, int precision, boolean isWeighted, 
@@ -45,12 +55,52 @@ public class VersatileLinkage extends HierarchicalClustering {
 		this.power = power;
 	}
 
+	// To be set before the first iteration. Without cache, the default, each 
+	// proximity is powered whenever it is used. The cache takes as much 
+	// memory as the roots proximities, and its sums of logarithms for the 
+	// geometric mean may differ from the products in the last bits, so it 
+	// is only used if requested and never for the arithmetic mean.
+	public void setCached(boolean isCached) {
+		this.isCached = isCached && !Double.isInfinite(this.power) && 
+				(this.power != 1.0);
+	}
+
+	public boolean isCached() {
+		return this.isCached;
+	}
+
+	@Override
+	protected void resetRootsCache() {
+		if (this.isCached) {
+			int numSlots = numberOfSlots();
+			if (this.poweredProximities == null) {
+				this.poweredProximities = new double[MatrixStorage.arrayLength(
+						(long)numSlots * (numSlots - 1) / 2)];
+			}
+			int index = 0;
+			for (int i = 1; i < numSlots; i ++) {
+				for (int j = 0; j < i; j ++) {
+					this.poweredProximities[index] = 
+							powered(slotsProximity(i, j));
+					index ++;
+				}
+			}
+		}
+	}
+
+	@Override
+	protected boolean isReducible() {
+		return true;
+	}
+
 	@Override
 	protected double calculateProximity(Dendrogram cI, Dendrogram cJ) {
 		if (this.power == Double.NEGATIVE_INFINITY) {
 			return minimumProximity(cI, cJ);
 		} else if (this.power == Double.POSITIVE_INFINITY) {
 			return maximumProximity(cI, cJ);
+		} else if (this.isCached) {
+			return cachedMean(cI, cJ);
 		} else if (this.power == 0.0) {
 			return geometricMean(cI, cJ);
 		} else {
@@ -105,11 +155,134 @@ public class VersatileLinkage extends HierarchicalClustering {
 		return proximity;
 	}
 
+	@Override
+	protected void releaseRootsCache() {
+		this.poweredProximities = null;
+	}
+
+	@Override
+	protected void writeRootsCache(DataOutput out) throws IOException {
+		out.writeBoolean(this.poweredProximities != null);
+		if (this.poweredProximities != null) {
+			int numSlots = numberOfSlots();
+			for (int i = 1; i < numSlots; i ++) {
+				if (isRootSlot(i)) {
+					for (int j = 0; j < i; j ++) {
+						if (isRootSlot(j)) {
+							out.writeDouble(this.poweredProximities[index(i, j)]);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// Without a saved cache, it is calculated again from the proximities
+	@Override
+	protected void readRootsCache(DataInput in) throws IOException {
+		boolean isSaved = in.readBoolean();
+		if (!isSaved) {
+			resetRootsCache();
+		}
+		int numSlots = numberOfSlots();
+		for (int i = 1; isSaved && (i < numSlots); i ++) {
+			if (isRootSlot(i)) {
+				for (int j = 0; j < i; j ++) {
+					if (isRootSlot(j)) {
+						double value = in.readDouble();
+						if (this.poweredProximities != null) {
+							this.poweredProximities[index(i, j)] = value;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private double cachedMean(Dendrogram cI, Dendrogram cJ) {
+		int numSubrootsI = cI.numberOfSubroots();
+		int numSubrootsJ = cJ.numberOfSubroots();
+		int[] slotsI = new int[numSubrootsI];
+		double[] weightsI = new double[numSubrootsI];
+		subrootsWeights(cI, slotsI, weightsI);
+		int[] slotsJ = new int[numSubrootsJ];
+		double[] weightsJ = new double[numSubrootsJ];
+		subrootsWeights(cJ, slotsJ, weightsJ);
+		double sum = 0.0;
+		for (int i = 0; i < numSubrootsI; i ++) {
+			double wI = weightsI[i];
+			int rowI = slotsI[i];
+			for (int j = 0; j < numSubrootsJ; j ++) {
+				sum += wI * weightsJ[j] * 
+						this.poweredProximities[index(rowI, slotsJ[j])];
+			}
+		}
+		// Both engines store the proximity of a supercluster in the slot of 
+		// its first subroot, and only read it after this calculation
+		this.poweredProximities[index(slotsI[0], slotsJ[0])] = sum;
+		return unpowered(sum);
+	}
+
+	private double cachedInternalMean(Dendrogram c) {
+		int numSubroots = c.numberOfSubroots();
+		int numLeaves = c.numberOfLeaves();
+		int[] slots = new int[numSubroots];
+		double[] weights = new double[numSubroots];
+		for (int i = 0; i < numSubroots; i ++) {
+			Dendrogram subc = c.getSubroot(i);
+			slots[i] = rootsSlot(subc);
+			weights[i] = this.isWeighted ? 1.0 : (double)subc.numberOfLeaves();
+		}
+		double sum = 0.0;
+		for (int i = 0; i < numSubroots - 1; i ++) {
+			double wI = weights[i];
+			int rowI = slots[i];
+			for (int j = i + 1; j < numSubroots; j ++) {
+				sum += wI * weights[j] * 
+						this.poweredProximities[index(rowI, slots[j])];
+			}
+		}
+		double w = this.isWeighted ? 
+				2.0 / (double)(numSubroots * (numSubroots - 1)) : 
+				2.0 / (double)(numLeaves * (numLeaves - 1));
+		return unpowered(w * sum);
+	}
+
+	private void subrootsWeights(Dendrogram c, int[] slots, double[] weights) {
+		int numSubroots = slots.length;
+		int numLeaves = c.numberOfLeaves();
+		for (int i = 0; i < numSubroots; i ++) {
+			Dendrogram subc = c.getSubroot(i);
+			slots[i] = rootsSlot(subc);
+			weights[i] = this.isWeighted ? 
+					1.0 / (double)numSubroots : 
+					(double)subc.numberOfLeaves() / (double)numLeaves;
+		}
+	}
+
+	private double powered(double proximity) {
+		return (this.power == 0.0) ? 
+				Math.log(proximity) : Math.pow(proximity, this.power);
+	}
+
+	private double unpowered(double sum) {
+		return (this.power == 0.0) ? 
+				Math.exp(sum) : Math.pow(sum, 1.0 / this.power);
+	}
+
+	private static int index(int slot1, int slot2) {
+		return (slot1 > slot2) ? 
+				(int)((long)slot1 * (slot1 - 1) / 2) + slot2 : 
+				(int)((long)slot2 * (slot2 - 1) / 2) + slot1;
+	}
+
 	protected double calculateInternalProximity(Dendrogram c) {
 		if (this.power == Double.NEGATIVE_INFINITY) {
 			return minimumInternalProximity(c);
 		} else if (this.power == Double.POSITIVE_INFINITY) {
 			return maximumInternalProximity(c);
+		} else if (this.isCached) {
+			return cachedInternalMean(c);
 		} else if (this.power == 0.0) {
 			return geometricInternalMean(c);
 		} else {
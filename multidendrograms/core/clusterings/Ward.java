@@ -39,6 +39,32 @@ public class Ward extends HierarchicalClustering {
 		super(proximityMatrix, labels, isDistanceBased, precision);
 	}
 
+	@Override
+	protected boolean isReducible() {
+		return true;
+	}
+
+	@Override
+	protected boolean isReducible(Dendrogram supercluster) {
+		// Only when all the subroots are tied, otherwise the beta terms may
+		// give proximities below the grouping proximity
+		return isTied(supercluster.getRootBottomHeight(), 
+				supercluster.getRootTopHeight());
+	}
+
+	@Override
+	protected boolean isCentroidLinkage() {
+		return true;
+	}
+
+	@Override
+	protected double centroidsProximity(Dendrogram root1, Dendrogram root2, 
+			double squaredDistance) {
+		double size1 = root1.numberOfLeaves();
+		double size2 = root2.numberOfLeaves();
+		return Math.sqrt(2.0 * size1 * size2 / (size1 + size2) * squaredDistance);
+	}
+
 	@Override
 	protected double calculateProximity(Dendrogram cI, Dendrogram cJ) {
 		return Math.sqrt(alphaTerm(cI, cJ) + betaTerm(cI, cJ) + betaTerm(cJ, cI));
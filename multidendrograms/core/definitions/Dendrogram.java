@@ -18,8 +18,6 @@
 
 package multidendrograms.core.definitions;
 
-import java.util.LinkedList;
-
 /******************************************************************************
  * <p>
  * <b>MultiDendrograms</b>
@@ -33,150 +31,132 @@ import java.util.LinkedList;
  ******************************************************************************/
 public class Dendrogram {
 
-	// Variables that define the dendrogram root
-	private int identifier;
-	private String label;
-	private double rootBottomHeight = Double.NaN;
-	private double rootInternalHeight = Double.NaN;
-	private double rootTopHeight = Double.NaN;
+	private final DendrogramStore store;
+	private final int node;
 
 	// Parameters used to build the dendrogram
 	public final boolean isDistanceBased;
 	public final int precision;
 
-	// Global minimum and maximum heights
-	private double nodesMinHeight = Double.NaN;
-	private double nodesMaxHeight = Double.NaN;
-	private double bandsMinHeight = Double.NaN;
-	private double bandsMaxHeight = Double.NaN;
-
-	// To know if it is a supercluster
-	private boolean isSupercluster = true;
-
-	// Lists
-	private LinkedList<Dendrogram> subclustersList;
-	private LinkedList<Dendrogram> leavesList;
-
-	public Dendrogram(int identifier, String label, boolean isDistanceBased, 
-			int precision) {
-		this.identifier = identifier;
-		this.label = label;
-		this.isDistanceBased = isDistanceBased;
-		this.precision = precision;
-		this.subclustersList = new LinkedList<Dendrogram>();
-		this.leavesList = new LinkedList<Dendrogram>();
+	Dendrogram(DendrogramStore store, int node) {
+		this.store = store;
+		this.node = node;
+		this.isDistanceBased = store.isDistanceBased;
+		this.precision = store.precision;
 	}
 
 	public int getIdentifier() {
-		return this.identifier;
+		return this.store.getIdentifier(this.node);
 	}
 
 	public String getLabel() {
-		return this.label;
+		return this.store.getLabel(this.node);
 	}
 
 	public void setRootHeights(final double height) {
-		this.rootBottomHeight = height;
-		this.rootInternalHeight = height;
-		this.rootTopHeight = height;
+		this.store.setRootBottomHeight(this.node, height);
+		this.store.setRootInternalHeight(this.node, height);
+		this.store.setRootTopHeight(this.node, height);
 	}
 
 	public double getRootBottomHeight() {
-		return this.rootBottomHeight;
+		return this.store.getRootBottomHeight(this.node);
 	}
 
 	public void setRootInternalHeight(final double rootInternalHeight) {
-		this.rootInternalHeight = rootInternalHeight;
+		this.store.setRootInternalHeight(this.node, rootInternalHeight);
 	}
 
 	public double getRootInternalHeight() {
-		return this.rootInternalHeight;
+		return this.store.getRootInternalHeight(this.node);
 	}
 
 	public void setRootTopHeight(final double rootTopHeight) {
-		this.rootTopHeight = rootTopHeight;
-		this.bandsMinHeight = Math.min(this.bandsMinHeight, rootTopHeight);
-		this.bandsMaxHeight = Math.max(this.bandsMaxHeight, rootTopHeight);
+		this.store.setRootTopHeight(this.node, rootTopHeight);
+		this.store.setBandsMinHeight(this.node, 
+				Math.min(getBandsMinHeight(), rootTopHeight));
+		this.store.setBandsMaxHeight(this.node, 
+				Math.max(getBandsMaxHeight(), rootTopHeight));
 	}
 
 	public double getRootTopHeight() {
-		return this.rootTopHeight;
+		return this.store.getRootTopHeight(this.node);
 	}
 
 	public void setNodesHeights(final double height) {
-		this.nodesMinHeight = height;
-		this.nodesMaxHeight = height;
+		this.store.setNodesMinHeight(this.node, height);
+		this.store.setNodesMaxHeight(this.node, height);
 	}
 
 	public void setBandsHeights(final double height) {
-		this.bandsMinHeight = height;
-		this.bandsMaxHeight = height;
+		this.store.setBandsMinHeight(this.node, height);
+		this.store.setBandsMaxHeight(this.node, height);
 	}
 
 	public double getNodesMinHeight() {
-		return this.nodesMinHeight;
+		return this.store.getNodesMinHeight(this.node);
 	}
 
 	public double getNodesMaxHeight() {
-		return this.nodesMaxHeight;
+		return this.store.getNodesMaxHeight(this.node);
 	}
 
 	public double getBandsMinHeight() {
-		return this.bandsMinHeight;
+		return this.store.getBandsMinHeight(this.node);
 	}
 
 	public double getBandsMaxHeight() {
-		return this.bandsMaxHeight;
+		return this.store.getBandsMaxHeight(this.node);
 	}
 
 	public void setSupercluster(boolean isSupercluster) {
-		this.isSupercluster = isSupercluster;
+		this.store.setSupercluster(this.node, isSupercluster);
 	}
 
 	public boolean isSupercluster() {
-		return this.isSupercluster;
+		return this.store.isSupercluster(this.node);
 	}
 
 	public void addSubcluster(final Dendrogram subc) {
-		this.subclustersList.addLast(subc);
-		if (subc.numberOfSubclusters() == 1) {
-			this.leavesList.add(subc);
-		} else {
-			this.leavesList.addAll(subc.leavesList);
+		if (subc.store != this.store) {
+			throw new IllegalArgumentException(
+					"Subcluster from a different dendrogram store");
 		}
-		if (Double.isNaN(this.nodesMinHeight)) {
-			this.nodesMinHeight = subc.nodesMinHeight;
-		} else if (!Double.isNaN(subc.nodesMinHeight)) {
-			this.nodesMinHeight = 
-					Math.min(this.nodesMinHeight, subc.nodesMinHeight);
+		this.store.addChild(this.node, subc.node);
+		double nodesMinHeight = getNodesMinHeight();
+		double nodesMaxHeight = getNodesMaxHeight();
+		double bandsMinHeight = getBandsMinHeight();
+		double bandsMaxHeight = getBandsMaxHeight();
+		if (Double.isNaN(nodesMinHeight)) {
+			nodesMinHeight = subc.getNodesMinHeight();
+		} else if (!Double.isNaN(subc.getNodesMinHeight())) {
+			nodesMinHeight = Math.min(nodesMinHeight, subc.getNodesMinHeight());
 		}
-		if (Double.isNaN(this.nodesMaxHeight)) {
-			this.nodesMaxHeight = subc.nodesMaxHeight;
-		} else if (!Double.isNaN(subc.nodesMaxHeight)) {
-			this.nodesMaxHeight = 
-					Math.max(this.nodesMaxHeight, subc.nodesMaxHeight);
+		if (Double.isNaN(nodesMaxHeight)) {
+			nodesMaxHeight = subc.getNodesMaxHeight();
+		} else if (!Double.isNaN(subc.getNodesMaxHeight())) {
+			nodesMaxHeight = Math.max(nodesMaxHeight, subc.getNodesMaxHeight());
 		}
-		if (!Double.isNaN(subc.bandsMinHeight)) {
-			this.bandsMinHeight = 
-					Math.min(this.bandsMinHeight, subc.bandsMinHeight);
+		if (!Double.isNaN(subc.getBandsMinHeight())) {
+			bandsMinHeight = Math.min(bandsMinHeight, subc.getBandsMinHeight());
 		}
-		if (!Double.isNaN(subc.bandsMaxHeight)) {
-			this.bandsMaxHeight = 
-					Math.max(this.bandsMaxHeight, subc.bandsMaxHeight);
+		if (!Double.isNaN(subc.getBandsMaxHeight())) {
+			bandsMaxHeight = Math.max(bandsMaxHeight, subc.getBandsMaxHeight());
 		}
+		this.store.setNodesMinHeight(this.node, nodesMinHeight);
+		this.store.setNodesMaxHeight(this.node, nodesMaxHeight);
+		this.store.setBandsMinHeight(this.node, bandsMinHeight);
+		this.store.setBandsMaxHeight(this.node, bandsMaxHeight);
 	}
 
 	public int numberOfSubclusters() {
-		if (this.subclustersList.size() == 0) {
-			return 1;
-		} else {
-			return this.subclustersList.size();
-		}
+		int numChildren = this.store.numberOfChildren(this.node);
+		return (numChildren == 0) ? 1 : numChildren;
 	}
 
 	public int numberOfSubroots() {
-		if (this.isSupercluster) {
-			return this.subclustersList.size();
+		if (isSupercluster()) {
+			return this.store.numberOfChildren(this.node);
 		} else {
 			return 1;
 		}
@@ -184,10 +164,11 @@ public class Dendrogram {
 
 	public Dendrogram getSubcluster(int position) {
 		Dendrogram c;
-		if (this.subclustersList.isEmpty() && (position == 0)) {
+		int numChildren = this.store.numberOfChildren(this.node);
+		if ((numChildren == 0) && (position == 0)) {
 			c = this;
-		} else if (position < this.subclustersList.size()) {
-			c = this.subclustersList.get(position);
+		} else if (position < numChildren) {
+			c = this.store.getView(this.store.getChild(this.node, position));
 		} else {
 			c = null;
 		}
@@ -196,8 +177,8 @@ public class Dendrogram {
 
 	public Dendrogram getSubroot(int position) {
 		Dendrogram c;
-		if (this.isSupercluster) {
-			c = this.subclustersList.get(position);
+		if (isSupercluster()) {
+			c = this.store.getView(this.store.getChild(this.node, position));
 		} else if (position == 0) {
 			c = this;
 		} else {
@@ -206,20 +187,19 @@ public class Dendrogram {
 		return c;
 	}
 
+	public Dendrogram getParent() {
+		int parent = this.store.getParent(this.node);
+		return (parent < 0) ? null : this.store.getView(parent);
+	}
+
 	public int numberOfLeaves() {
-		if (this.leavesList.size() == 0) {
-			return 1;
-		} else {
-			return this.leavesList.size();
-		}
+		return this.store.numberOfLeaves(this.node);
 	}
 
 	public Dendrogram getLeaf(int position) {
 		Dendrogram c = null;
-		if (this.leavesList.isEmpty() && (position == 0)) {
-			c = this;
-		} else if (position < this.leavesList.size()) {
-			c = this.leavesList.get(position);
+		if ((position >= 0) && (position < numberOfLeaves())) {
+			c = this.store.getView(this.store.getLeaf(this.node, position));
 		}
 		return c;
 	}
@@ -256,7 +236,7 @@ public class Dendrogram {
 			et.sumEntropy = rootEntropy();
 			et.numJunctions = 1;
 			for (int i = 0; i < numSubclusters; i ++) {
-				Dendrogram cI = this.subclustersList.get(i);
+				Dendrogram cI = getSubcluster(i);
 				EntropyTuple etI = cI.accumulateEntropy();
 				et.sumEntropy += etI.sumEntropy;
 				et.numJunctions += etI.numJunctions;
@@ -271,7 +251,7 @@ public class Dendrogram {
 		if (numSubclusters > 1) {
 			int numLeaves = numberOfLeaves();
 			for (int i = 0; i < numSubclusters; i ++) {
-				Dendrogram cI = this.subclustersList.get(i);
+				Dendrogram cI = getSubcluster(i);
 				double p = (double)cI.numberOfLeaves() / (double)numLeaves;
 				h -= p * Math.log(p);
 			}
@@ -0,0 +1,420 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Compact storage of the nodes of a dendrogram in parallel arrays. The
+ * children of each node are kept in a block of a shared array, and the
+ * leaves are linked in order so that every node only stores its first and
+ * last leaf. Dendrogram objects are views of the nodes of a store.
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+public class DendrogramStore {
+
+	private static final int NULL_NODE = -1;
+
+	// Parameters used to build the dendrogram
+	public final boolean isDistanceBased;
+	public final int precision;
+
+	private int numNodes = 0;
+	private int[] identifiers;
+	private String[] labels;
+	private Dendrogram[] views;
+
+	// Heights
+	private double[] rootBottomHeights;
+	private double[] rootInternalHeights;
+	private double[] rootTopHeights;
+	private double[] nodesMinHeights;
+	private double[] nodesMaxHeights;
+	private double[] bandsMinHeights;
+	private double[] bandsMaxHeights;
+
+	// To know if it is a supercluster
+	private boolean[] isSupercluster;
+
+	// Tree, with the children of each node in a block of the children array
+	private int[] parents;
+	private int[] childrenStarts;
+	private int[] childrenSizes;
+	private int[] childrenCapacities;
+	private int[] children;
+	private int childrenSize = 0;
+
+	// Leaves, linked in order from the first to the last leaf of each node
+	private int[] leavesSizes;
+	private int[] firstLeaves;
+	private int[] lastLeaves;
+	private int[] nextLeaves;
+
+	// Leaves order of all the trees, rebuilt after any modification
+	private int[] leavesOrder = null;
+	private int[] leavesPositions = null;
+	private boolean isLeavesOrderValid = false;
+
+	public DendrogramStore(int capacity, boolean isDistanceBased, 
+			int precision) {
+		this.isDistanceBased = isDistanceBased;
+		this.precision = precision;
+		capacity = Math.max(capacity, 1);
+		this.identifiers = new int[capacity];
+		this.labels = new String[capacity];
+		this.views = new Dendrogram[capacity];
+		this.rootBottomHeights = new double[capacity];
+		this.rootInternalHeights = new double[capacity];
+		this.rootTopHeights = new double[capacity];
+		this.nodesMinHeights = new double[capacity];
+		this.nodesMaxHeights = new double[capacity];
+		this.bandsMinHeights = new double[capacity];
+		this.bandsMaxHeights = new double[capacity];
+		this.isSupercluster = new boolean[capacity];
+		this.parents = new int[capacity];
+		this.childrenStarts = new int[capacity];
+		this.childrenSizes = new int[capacity];
+		this.childrenCapacities = new int[capacity];
+		this.children = new int[capacity];
+		this.leavesSizes = new int[capacity];
+		this.firstLeaves = new int[capacity];
+		this.lastLeaves = new int[capacity];
+		this.nextLeaves = new int[capacity];
+	}
+
+	public Dendrogram newDendrogram(int identifier, String label) {
+		if (this.numNodes == this.identifiers.length) {
+			grow();
+		}
+		int node = this.numNodes;
+		this.numNodes ++;
+		this.identifiers[node] = identifier;
+		this.labels[node] = label;
+		this.rootBottomHeights[node] = Double.NaN;
+		this.rootInternalHeights[node] = Double.NaN;
+		this.rootTopHeights[node] = Double.NaN;
+		this.nodesMinHeights[node] = Double.NaN;
+		this.nodesMaxHeights[node] = Double.NaN;
+		this.bandsMinHeights[node] = Double.NaN;
+		this.bandsMaxHeights[node] = Double.NaN;
+		this.isSupercluster[node] = true;
+		this.parents[node] = NULL_NODE;
+		this.childrenStarts[node] = 0;
+		this.childrenSizes[node] = 0;
+		this.childrenCapacities[node] = 0;
+		this.leavesSizes[node] = 0;
+		this.firstLeaves[node] = node;
+		this.lastLeaves[node] = node;
+		this.nextLeaves[node] = NULL_NODE;
+		this.isLeavesOrderValid = false;
+		Dendrogram view = new Dendrogram(this, node);
+		this.views[node] = view;
+		return view;
+	}
+
+	private void grow() {
+		int capacity = 2 * this.identifiers.length;
+		this.identifiers = Arrays.copyOf(this.identifiers, capacity);
+		this.labels = Arrays.copyOf(this.labels, capacity);
+		this.views = Arrays.copyOf(this.views, capacity);
+		this.rootBottomHeights = Arrays.copyOf(this.rootBottomHeights, capacity);
+		this.rootInternalHeights = 
+				Arrays.copyOf(this.rootInternalHeights, capacity);
+		this.rootTopHeights = Arrays.copyOf(this.rootTopHeights, capacity);
+		this.nodesMinHeights = Arrays.copyOf(this.nodesMinHeights, capacity);
+		this.nodesMaxHeights = Arrays.copyOf(this.nodesMaxHeights, capacity);
+		this.bandsMinHeights = Arrays.copyOf(this.bandsMinHeights, capacity);
+		this.bandsMaxHeights = Arrays.copyOf(this.bandsMaxHeights, capacity);
+		this.isSupercluster = Arrays.copyOf(this.isSupercluster, capacity);
+		this.parents = Arrays.copyOf(this.parents, capacity);
+		this.childrenStarts = Arrays.copyOf(this.childrenStarts, capacity);
+		this.childrenSizes = Arrays.copyOf(this.childrenSizes, capacity);
+		this.childrenCapacities = 
+				Arrays.copyOf(this.childrenCapacities, capacity);
+		this.leavesSizes = Arrays.copyOf(this.leavesSizes, capacity);
+		this.firstLeaves = Arrays.copyOf(this.firstLeaves, capacity);
+		this.lastLeaves = Arrays.copyOf(this.lastLeaves, capacity);
+		this.nextLeaves = Arrays.copyOf(this.nextLeaves, capacity);
+	}
+
+	// Removes all the nodes created after the first numNodes ones, which 
+	// become roots again
+	public void truncate(int numNodes) {
+		for (int node = numNodes; node < this.numNodes; node ++) {
+			this.labels[node] = null;
+			this.views[node] = null;
+		}
+		this.numNodes = numNodes;
+		this.childrenSize = 0;
+		for (int node = 0; node < numNodes; node ++) {
+			this.parents[node] = NULL_NODE;
+			this.childrenSizes[node] = 0;
+			this.childrenCapacities[node] = 0;
+			this.leavesSizes[node] = 0;
+			this.firstLeaves[node] = node;
+			this.lastLeaves[node] = node;
+			this.nextLeaves[node] = NULL_NODE;
+		}
+		this.isLeavesOrderValid = false;
+	}
+
+	public int numberOfNodes() {
+		return this.numNodes;
+	}
+
+	public Dendrogram getDendrogram(int node) {
+		return this.views[node];
+	}
+
+	Dendrogram getView(int node) {
+		return this.views[node];
+	}
+
+	public void writeNodes(DataOutput out) throws IOException {
+		out.writeInt(this.numNodes);
+		for (int node = 0; node < this.numNodes; node ++) {
+			out.writeInt(this.identifiers[node]);
+			out.writeUTF(this.labels[node]);
+			out.writeDouble(this.rootBottomHeights[node]);
+			out.writeDouble(this.rootInternalHeights[node]);
+			out.writeDouble(this.rootTopHeights[node]);
+			out.writeDouble(this.nodesMinHeights[node]);
+			out.writeDouble(this.nodesMaxHeights[node]);
+			out.writeDouble(this.bandsMinHeights[node]);
+			out.writeDouble(this.bandsMaxHeights[node]);
+			out.writeBoolean(this.isSupercluster[node]);
+			out.writeInt(this.childrenSizes[node]);
+			for (int c = 0; c < this.childrenSizes[node]; c ++) {
+				out.writeInt(getChild(node, c));
+			}
+		}
+	}
+
+	// Replaces the nodes created after the first numLeaves ones, adding the 
+	// children in the same order to get the same leaves order
+	public void readNodes(DataInput in, int numLeaves) throws IOException {
+		truncate(numLeaves);
+		int numNodes = in.readInt();
+		for (int node = 0; node < numNodes; node ++) {
+			int identifier = in.readInt();
+			String label = in.readUTF();
+			if (node >= numLeaves) {
+				newDendrogram(identifier, label);
+			} else if (identifier != this.identifiers[node]) {
+				throw new IOException("Wrong leaf identifier: " + identifier);
+			}
+			this.rootBottomHeights[node] = in.readDouble();
+			this.rootInternalHeights[node] = in.readDouble();
+			this.rootTopHeights[node] = in.readDouble();
+			this.nodesMinHeights[node] = in.readDouble();
+			this.nodesMaxHeights[node] = in.readDouble();
+			this.bandsMinHeights[node] = in.readDouble();
+			this.bandsMaxHeights[node] = in.readDouble();
+			this.isSupercluster[node] = in.readBoolean();
+			int numChildren = in.readInt();
+			for (int c = 0; c < numChildren; c ++) {
+				int child = in.readInt();
+				if ((child < 0) || (child >= node)) {
+					throw new IOException("Wrong child node: " + child);
+				}
+				addChild(node, child);
+			}
+		}
+	}
+
+	int getIdentifier(int node) {
+		return this.identifiers[node];
+	}
+
+	String getLabel(int node) {
+		return this.labels[node];
+	}
+
+	double getRootBottomHeight(int node) {
+		return this.rootBottomHeights[node];
+	}
+
+	void setRootBottomHeight(int node, double height) {
+		this.rootBottomHeights[node] = height;
+	}
+
+	double getRootInternalHeight(int node) {
+		return this.rootInternalHeights[node];
+	}
+
+	void setRootInternalHeight(int node, double height) {
+		this.rootInternalHeights[node] = height;
+	}
+
+	double getRootTopHeight(int node) {
+		return this.rootTopHeights[node];
+	}
+
+	void setRootTopHeight(int node, double height) {
+		this.rootTopHeights[node] = height;
+	}
+
+	double getNodesMinHeight(int node) {
+		return this.nodesMinHeights[node];
+	}
+
+	void setNodesMinHeight(int node, double height) {
+		this.nodesMinHeights[node] = height;
+	}
+
+	double getNodesMaxHeight(int node) {
+		return this.nodesMaxHeights[node];
+	}
+
+	void setNodesMaxHeight(int node, double height) {
+		this.nodesMaxHeights[node] = height;
+	}
+
+	double getBandsMinHeight(int node) {
+		return this.bandsMinHeights[node];
+	}
+
+	void setBandsMinHeight(int node, double height) {
+		this.bandsMinHeights[node] = height;
+	}
+
+	double getBandsMaxHeight(int node) {
+		return this.bandsMaxHeights[node];
+	}
+
+	void setBandsMaxHeight(int node, double height) {
+		this.bandsMaxHeights[node] = height;
+	}
+
+	boolean isSupercluster(int node) {
+		return this.isSupercluster[node];
+	}
+
+	void setSupercluster(int node, boolean isSupercluster) {
+		this.isSupercluster[node] = isSupercluster;
+	}
+
+	int getParent(int node) {
+		return this.parents[node];
+	}
+
+	int numberOfChildren(int node) {
+		return this.childrenSizes[node];
+	}
+
+	int getChild(int node, int position) {
+		if (position >= this.childrenSizes[node]) {
+			throw new IndexOutOfBoundsException("Index: " + position + 
+					", Size: " + this.childrenSizes[node]);
+		}
+		return this.children[this.childrenStarts[node] + position];
+	}
+
+	void addChild(int node, int child) {
+		int size = this.childrenSizes[node];
+		if (size == this.childrenCapacities[node]) {
+			growChildren(node);
+		}
+		this.children[this.childrenStarts[node] + size] = child;
+		this.childrenSizes[node] = size + 1;
+		this.parents[child] = node;
+		// Append the leaves of the child
+		if (size == 0) {
+			this.firstLeaves[node] = this.firstLeaves[child];
+			this.leavesSizes[node] = 0;
+		} else {
+			this.nextLeaves[this.lastLeaves[node]] = this.firstLeaves[child];
+		}
+		this.lastLeaves[node] = this.lastLeaves[child];
+		this.leavesSizes[node] += numberOfLeaves(child);
+		this.isLeavesOrderValid = false;
+	}
+
+	private void growChildren(int node) {
+		int start = this.childrenStarts[node];
+		int size = this.childrenSizes[node];
+		int capacity = Math.max(2, 2 * size);
+		if ((size > 0) && (start + size == this.childrenSize)) {
+			// Last block, grow it in place
+			ensureChildrenCapacity(start + capacity);
+		} else {
+			// Move the block to the end of the children array
+			ensureChildrenCapacity(this.childrenSize + capacity);
+			System.arraycopy(this.children, start, this.children, 
+					this.childrenSize, size);
+			start = this.childrenSize;
+			this.childrenStarts[node] = start;
+		}
+		this.childrenCapacities[node] = capacity;
+		this.childrenSize = start + capacity;
+	}
+
+	private void ensureChildrenCapacity(int capacity) {
+		if (capacity > this.children.length) {
+			int length = Math.max(capacity, 2 * this.children.length);
+			this.children = Arrays.copyOf(this.children, length);
+		}
+	}
+
+	int numberOfLeaves(int node) {
+		int size = this.leavesSizes[node];
+		return (size == 0) ? 1 : size;
+	}
+
+	int getLeaf(int node, int position) {
+		if (!this.isLeavesOrderValid) {
+			updateLeavesOrder();
+		}
+		int first = this.leavesPositions[this.firstLeaves[node]];
+		return this.leavesOrder[first + position];
+	}
+
+	private void updateLeavesOrder() {
+		if ((this.leavesOrder == null) || 
+				(this.leavesOrder.length < this.numNodes)) {
+			this.leavesOrder = new int[this.identifiers.length];
+			this.leavesPositions = new int[this.identifiers.length];
+		}
+		int position = 0;
+		for (int node = 0; node < this.numNodes; node ++) {
+			if (this.parents[node] == NULL_NODE) {
+				int leaf = this.firstLeaves[node];
+				int numLeaves = numberOfLeaves(node);
+				for (int n = 0; n < numLeaves; n ++) {
+					this.leavesOrder[position] = leaf;
+					this.leavesPositions[leaf] = position;
+					position ++;
+					leaf = this.nextLeaves[leaf];
+				}
+			}
+		}
+		this.isLeavesOrderValid = true;
+	}
+
+}
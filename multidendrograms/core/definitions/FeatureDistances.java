@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Distance matrix between feature vectors. The lower triangle is divided in
+ * square tiles, small enough to keep the feature vectors of their rows and
+ * columns in the cache, which may be computed in parallel. With lazy storage
+ * the tiles are only computed to find the range of the distances, which are
+ * calculated again when read, so only the feature vectors and a cache of
+ * bounded size are kept. The cosine and correlation distances are one minus
+ * the cosine similarity and the Pearson correlation, taken as zero for null
+ * and constant vectors respectively
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+public class FeatureDistances {
+
+	// Bytes of the feature vectors of the rows and the columns of a tile
+	private static final int TILE_BYTES = 1 << 16;
+	private static final int DOUBLE_BYTES = 8;
+	private static final int MIN_TILE_SIZE = 8;
+	private static final int MAX_TILE_SIZE = 256;
+	// Minimum number of distances calculated by each parallel task
+	private static final long MIN_TASK_DISTANCES = 1 << 16;
+	// Significant digits of the distances which are not exact
+	private static final int DISTANCE_DIGITS = 12;
+	public static final long DEFAULT_CACHE_BYTES = 256L << 20;
+
+	// Tile cache of the lazy storages
+	private static long cacheBytes = DEFAULT_CACHE_BYTES;
+	private static EvictionType evictionType = EvictionType.LRU;
+
+	private final int numElements;
+	private final int numFeatures;
+	private final MetricType metricType;
+	// Feature vectors by rows, centered and normalized for the cosine and
+	// correlation distances
+	private final double[] features;
+	private final int tileSize;
+	private final int numTileRows;
+	private final MatrixStorage lowerTriangle;
+	private final boolean isLazy;
+	private final boolean isSinglePrecision;
+	private final SymmetricMatrix distanceMatrix;
+
+	// Sparse storages are not safe for concurrent updates, and are calculated
+	// without the pool
+	public FeatureDistances(double[][] features, MetricType metricType, 
+			StorageType storageType, ForkJoinPool pool) {
+		this.numElements = features.length;
+		this.numFeatures = (this.numElements == 0) ? 0 : features[0].length;
+		this.metricType = metricType;
+		this.features = new double[MatrixStorage.arrayLength(
+				(long)this.numElements * this.numFeatures)];
+		int featuresDecimals = 0;
+		for (int i = 0; i < this.numElements; i ++) {
+			if (features[i].length != this.numFeatures) {
+				throw new IllegalArgumentException("Wrong number of features of "
+						+ "element " + i + ": " + features[i].length);
+			}
+			for (int f = 0; f < this.numFeatures; f ++) {
+				featuresDecimals = Math.max(featuresDecimals, decimals(features[i][f]));
+			}
+			System.arraycopy(features[i], 0, this.features, i * this.numFeatures, 
+					this.numFeatures);
+			if (metricType.equals(MetricType.CORRELATION)) {
+				center(i);
+			}
+			if (metricType.equals(MetricType.COSINE) || 
+					metricType.equals(MetricType.CORRELATION)) {
+				normalize(i);
+			}
+		}
+		this.tileSize = Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, 
+				TILE_BYTES / (2 * DOUBLE_BYTES * Math.max(1, this.numFeatures))));
+		this.numTileRows = (this.numElements + this.tileSize - 1) / this.tileSize;
+		long numDistances = (long)this.numElements * (this.numElements - 1) / 2;
+		this.isLazy = storageType.equals(StorageType.LAZY);
+		if (this.isLazy) {
+			this.lowerTriangle = new TileCacheStorage(this, this.numElements, 
+					this.tileSize, cacheBytes, evictionType);
+		} else {
+			this.lowerTriangle = MatrixStorage.newStorage(storageType, numDistances);
+		}
+		this.isSinglePrecision = storageType.equals(StorageType.FLOAT);
+		long numTiles = (long)this.numTileRows * (this.numTileRows + 1) / 2;
+		double[] valuesRange = {Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+		if ((pool != null) && !storageType.equals(StorageType.SPARSE) && 
+				(numDistances > MIN_TASK_DISTANCES)) {
+			TilesTask task = new TilesTask(0, numTiles);
+			pool.invoke(task);
+			valuesRange = task.valuesRange;
+		} else {
+			calculateTiles(0, numTiles, valuesRange);
+		}
+		this.distanceMatrix = new SymmetricMatrix(new double[this.numElements], 
+				this.lowerTriangle, valuesRange[0], valuesRange[1], 
+				precision(featuresDecimals, valuesRange[1]));
+		if (metricType.equals(MetricType.EUCLIDEAN) && !this.isSinglePrecision) {
+			// Exact distances between the features
+			this.distanceMatrix.setPoints(this.features, this.numFeatures);
+		}
+	}
+
+	public SymmetricMatrix getDistanceMatrix() {
+		return this.distanceMatrix;
+	}
+
+	// Size and eviction of the tile cache of the lazy storages created next
+	public static void setCache(long cacheBytes, EvictionType evictionType) {
+		FeatureDistances.cacheBytes = cacheBytes;
+		FeatureDistances.evictionType = evictionType;
+	}
+
+	private void center(int i) {
+		int first = i * this.numFeatures;
+		double mean = 0.0;
+		for (int f = 0; f < this.numFeatures; f ++) {
+			mean += this.features[first + f];
+		}
+		mean /= this.numFeatures;
+		for (int f = 0; f < this.numFeatures; f ++) {
+			this.features[first + f] -= mean;
+		}
+	}
+
+	private void normalize(int i) {
+		int first = i * this.numFeatures;
+		double norm = 0.0;
+		for (int f = 0; f < this.numFeatures; f ++) {
+			norm += this.features[first + f] * this.features[first + f];
+		}
+		norm = Math.sqrt(norm);
+		for (int f = 0; f < this.numFeatures; f ++) {
+			this.features[first + f] = (norm > 0.0) ? 
+					this.features[first + f] / norm : 0.0;
+		}
+	}
+
+	// Decimals of the distances which are sums of features, or of their 
+	// products, and significant digits of the other ones
+	private int precision(int featuresDecimals, double maxValue) {
+		int intDigits = (maxValue < 1.0) ? 1 : 
+				1 + (int)Math.floor(Math.log10(maxValue));
+		int precision = Math.max(0, DISTANCE_DIGITS - intDigits);
+		if (this.metricType.equals(MetricType.MANHATTAN)) {
+			precision = Math.min(precision, featuresDecimals);
+		} else if (this.metricType.equals(MetricType.SQUARED_EUCLIDEAN)) {
+			precision = Math.min(precision, 2 * featuresDecimals);
+		}
+		return precision;
+	}
+
+	private static int decimals(double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value) || 
+				(Math.rint(value) == value)) {
+			return 0;
+		}
+		return Math.max(0, new BigDecimal(Double.toString(value))
+				.stripTrailingZeros().scale());
+	}
+
+	// Tiles numbered by rows of tiles of the lower triangle, updating the 
+	// minimum and maximum distances
+	private void calculateTiles(long firstTile, long lastTile, 
+			double[] valuesRange) {
+		int tileRow = (int)((Math.sqrt(8.0 * firstTile + 1.0) - 1.0) / 2.0);
+		while ((long)tileRow * (tileRow + 1) / 2 > firstTile) {
+			tileRow --;
+		}
+		while ((long)(tileRow + 1) * (tileRow + 2) / 2 <= firstTile) {
+			tileRow ++;
+		}
+		int tileColumn = (int)(firstTile - (long)tileRow * (tileRow + 1) / 2);
+		for (long t = firstTile; t < lastTile; t ++) {
+			calculateTile(tileRow, tileColumn, valuesRange);
+			tileColumn ++;
+			if (tileColumn > tileRow) {
+				tileRow ++;
+				tileColumn = 0;
+			}
+		}
+	}
+
+	// Distances stored by columns, each one contiguous in the lower triangle
+	private void calculateTile(int tileRow, int tileColumn, double[] valuesRange) {
+		int firstRow = tileRow * this.tileSize;
+		int lastRow = Math.min(firstRow + this.tileSize, this.numElements);
+		int firstColumn = tileColumn * this.tileSize;
+		int lastColumn = Math.min(firstColumn + this.tileSize, this.numElements);
+		long n = this.numElements;
+		double minValue = valuesRange[0];
+		double maxValue = valuesRange[1];
+		for (int j = firstColumn; j < lastColumn; j ++) {
+			long columnStart = (2 * n - j - 1) * j / 2 - j - 1;
+			for (int i = Math.max(firstRow, j + 1); i < lastRow; i ++) {
+				double value = distance(i, j);
+				if (this.isSinglePrecision) {
+					// Stored value
+					value = (float)value;
+				}
+				if (!this.isLazy) {
+					this.lowerTriangle.set(columnStart + i, value);
+				}
+				minValue = Math.min(minValue, value);
+				maxValue = Math.max(maxValue, value);
+			}
+		}
+		valuesRange[0] = minValue;
+		valuesRange[1] = maxValue;
+	}
+
+	// Same value for both orders of the elements
+	double distance(int i, int j) {
+		int firstI = i * this.numFeatures;
+		int firstJ = j * this.numFeatures;
+		double sum = 0.0;
+		switch (this.metricType) {
+		case MANHATTAN:
+			for (int f = 0; f < this.numFeatures; f ++) {
+				sum += Math.abs(this.features[firstI + f] - this.features[firstJ + f]);
+			}
+			return sum;
+		case COSINE:
+		case CORRELATION:
+			for (int f = 0; f < this.numFeatures; f ++) {
+				sum += this.features[firstI + f] * this.features[firstJ + f];
+			}
+			return Math.max(0.0, 1.0 - sum);
+		default:
+			for (int f = 0; f < this.numFeatures; f ++) {
+				double difference = this.features[firstI + f] - this.features[firstJ + f];
+				sum += difference * difference;
+			}
+			return this.metricType.equals(MetricType.EUCLIDEAN) ? Math.sqrt(sum) : sum;
+		}
+	}
+
+	private class TilesTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long firstTile;
+		private final long lastTile;
+		private final double[] valuesRange = 
+			{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+
+		public TilesTask(long firstTile, long lastTile) {
+			this.firstTile = firstTile;
+			this.lastTile = lastTile;
+		}
+
+		@Override
+		protected void compute() {
+			long numTiles = this.lastTile - this.firstTile;
+			if ((numTiles == 1) || 
+					(numTiles * tileSize * tileSize <= MIN_TASK_DISTANCES)) {
+				calculateTiles(this.firstTile, this.lastTile, this.valuesRange);
+			} else {
+				long middleTile = (this.firstTile + this.lastTile) >>> 1;
+				TilesTask task1 = new TilesTask(this.firstTile, middleTile);
+				TilesTask task2 = new TilesTask(middleTile, this.lastTile);
+				invokeAll(task1, task2);
+				this.valuesRange[0] = Math.min(task1.valuesRange[0], task2.valuesRange[0]);
+				this.valuesRange[1] = Math.max(task1.valuesRange[1], task2.valuesRange[1]);
+			}
+		}
+
+	}
+
+}
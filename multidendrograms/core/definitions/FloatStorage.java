@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.util.Arrays;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Storage of the elements of a matrix in single precision, using half the
+ * memory of double precision
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class FloatStorage extends MatrixStorage {
+
+	private final float[] elements;
+
+	public FloatStorage(long size) {
+		this.elements = new float[arrayLength(size)];
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.FLOAT;
+	}
+
+	@Override
+	public long size() {
+		return this.elements.length;
+	}
+
+	@Override
+	public double get(long index) {
+		return this.elements[(int)index];
+	}
+
+	@Override
+	public void set(long index, double value) {
+		this.elements[(int)index] = (float)value;
+	}
+
+	@Override
+	public void fill(double value) {
+		Arrays.fill(this.elements, (float)value);
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Storage of the elements of a matrix in a memory-mapped file, outside the
+ * heap. The file is mapped in segments of up to 1 GB, so the number of
+ * elements is only limited by the disk. Either a new temporary file of
+ * doubles, or a read-only region of an existing file of doubles or floats.
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class MappedStorage extends MatrixStorage {
+
+	// Elements in each segment
+	private static final int SEGMENT_SHIFT = 27;
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+	private static final int DOUBLE_BYTES = 8;
+	private static final int FLOAT_BYTES = 4;
+
+	private final long size;
+	private final DoubleBuffer[] segments;
+	private final FloatBuffer[] floatSegments;
+
+	public MappedStorage(long size) throws IOException {
+		this.size = size;
+		this.floatSegments = null;
+		File file = File.createTempFile("multidendrograms-", ".matrix");
+		file.deleteOnExit();
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			this.segments = new DoubleBuffer[numberOfSegments(size)];
+			for (int s = 0; s < this.segments.length; s ++) {
+				// Mappings remain valid after closing the channel
+				this.segments[s] = map(channel, FileChannel.MapMode.READ_WRITE, 
+						0, s, DOUBLE_BYTES).order(ByteOrder.nativeOrder())
+						.asDoubleBuffer();
+			}
+		} finally {
+			randomAccessFile.close();
+			// Systems that allow it release the file as soon as it is unmapped
+			file.delete();
+		}
+	}
+
+	// Read-only elements stored in little-endian order from the given 
+	// position of the file
+	public MappedStorage(FileChannel channel, long position, long size, 
+			boolean isSinglePrecision) throws IOException {
+		this.size = size;
+		int numSegments = numberOfSegments(size);
+		if (isSinglePrecision) {
+			this.segments = null;
+			this.floatSegments = new FloatBuffer[numSegments];
+			for (int s = 0; s < numSegments; s ++) {
+				this.floatSegments[s] = map(channel, FileChannel.MapMode.READ_ONLY, 
+						position, s, FLOAT_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+						.asFloatBuffer();
+			}
+		} else {
+			this.segments = new DoubleBuffer[numSegments];
+			this.floatSegments = null;
+			for (int s = 0; s < numSegments; s ++) {
+				this.segments[s] = map(channel, FileChannel.MapMode.READ_ONLY, 
+						position, s, DOUBLE_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+						.asDoubleBuffer();
+			}
+		}
+	}
+
+	private static int numberOfSegments(long size) {
+		return (int)((size + SEGMENT_SIZE - 1) >> SEGMENT_SHIFT);
+	}
+
+	private MappedByteBuffer map(FileChannel channel, 
+			FileChannel.MapMode mode, long position, int segment, 
+			int elementBytes) throws IOException {
+		long first = (long)segment << SEGMENT_SHIFT;
+		long length = Math.min(SEGMENT_SIZE, this.size - first);
+		return channel.map(mode, position + first * elementBytes, 
+				length * elementBytes);
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.MAPPED;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	@Override
+	public double get(long index) {
+		int segment = (int)(index >>> SEGMENT_SHIFT);
+		int position = (int)(index & SEGMENT_MASK);
+		if (this.segments != null) {
+			return this.segments[segment].get(position);
+		} else {
+			return this.floatSegments[segment].get(position);
+		}
+	}
+
+	@Override
+	public void set(long index, double value) {
+		int segment = (int)(index >>> SEGMENT_SHIFT);
+		int position = (int)(index & SEGMENT_MASK);
+		if (this.segments != null) {
+			this.segments[segment].put(position, value);
+		} else {
+			this.floatSegments[segment].put(position, (float)value);
+		}
+	}
+
+}
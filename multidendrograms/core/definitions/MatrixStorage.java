@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Storage of the elements of a matrix, by position
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+public abstract class MatrixStorage {
+
+	public static MatrixStorage newStorage(StorageType type, long size) {
+		switch (type) {
+		case FLOAT:
+			return new FloatStorage(size);
+		case SPARSE:
+			return new SparseStorage(size);
+		case LAZY:
+			throw new IllegalArgumentException(
+					"Lazy storages are only available for feature vectors");
+		case MAPPED:
+			try {
+				return new MappedStorage(size);
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Unable to map the matrix file: " + e.getMessage(), e);
+			}
+		default:
+			return new DoubleStorage(size);
+		}
+	}
+
+	// Read-only elements stored in little-endian order in a region of a file,
+	// mapped without copying them
+	public static MatrixStorage mapFile(FileChannel channel, long position, 
+			long size, boolean isSinglePrecision) throws IOException {
+		return new MappedStorage(channel, position, size, isSinglePrecision);
+	}
+
+	public abstract StorageType getType();
+
+	public abstract long size();
+
+	public abstract double get(long index);
+
+	// Element at the given index, which is that of the given row and column 
+	// in either order, for storages calculating their elements from them
+	public double get(int row, int column, long index) {
+		return get(index);
+	}
+
+	public abstract void set(long index, double value);
+
+	public void fill(double value) {
+		for (long index = 0; index < size(); index ++) {
+			set(index, value);
+		}
+	}
+
+	// Length of an array with the given number of elements
+	public static int arrayLength(long size) {
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many matrix elements: " 
+					+ size);
+		}
+		return (int)size;
+	}
+
+}
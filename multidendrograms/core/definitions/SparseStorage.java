@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.util.Arrays;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Storage of the elements of a matrix different from a default value, in an
+ * open addressing hash table of positions, so the memory only depends on the
+ * number of elements stored
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class SparseStorage extends MatrixStorage {
+
+	private static final long EMPTY = -1L;
+	private static final int MIN_CAPACITY = 16;
+
+	private final long size;
+	private double defaultValue = 0.0;
+	private long[] keys;
+	private double[] values;
+	private int numEntries = 0;
+
+	public SparseStorage(long size) {
+		this.size = size;
+		allocate(MIN_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY);
+		this.values = new double[capacity];
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.SPARSE;
+	}
+
+	@Override
+	public long size() {
+		return this.size;
+	}
+
+	public int numberOfEntries() {
+		return this.numEntries;
+	}
+
+	public double getDefaultValue() {
+		return this.defaultValue;
+	}
+
+	// Value of all the elements not stored
+	public void setDefaultValue(double value) {
+		this.defaultValue = value;
+	}
+
+	@Override
+	public double get(long index) {
+		int slot = find(index);
+		return (this.keys[slot] == EMPTY) ? this.defaultValue : this.values[slot];
+	}
+
+	@Override
+	public void set(long index, double value) {
+		int slot = find(index);
+		if (Double.doubleToLongBits(value) == 
+				Double.doubleToLongBits(this.defaultValue)) {
+			if (this.keys[slot] != EMPTY) {
+				remove(slot);
+			}
+		} else if (this.keys[slot] != EMPTY) {
+			this.values[slot] = value;
+		} else {
+			this.keys[slot] = index;
+			this.values[slot] = value;
+			this.numEntries ++;
+			if (4 * this.numEntries > 3 * this.keys.length) {
+				rehash(2 * this.keys.length);
+			}
+		}
+	}
+
+	@Override
+	public void fill(double value) {
+		this.defaultValue = value;
+		this.numEntries = 0;
+		allocate(MIN_CAPACITY);
+	}
+
+	// Positions of the elements stored, in increasing order
+	public long[] sortedIndices() {
+		long[] indices = new long[this.numEntries];
+		int n = 0;
+		for (int slot = 0; slot < this.keys.length; slot ++) {
+			if (this.keys[slot] != EMPTY) {
+				indices[n] = this.keys[slot];
+				n ++;
+			}
+		}
+		Arrays.sort(indices);
+		return indices;
+	}
+
+	// Slot of the given position, or the empty slot where it would be stored
+	private int find(long index) {
+		int mask = this.keys.length - 1;
+		int slot = hash(index) & mask;
+		while ((this.keys[slot] != EMPTY) && (this.keys[slot] != index)) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(long index) {
+		long h = index * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	// Linear probing deletion, moving back the following entries of the run
+	private void remove(int slot) {
+		int mask = this.keys.length - 1;
+		int hole = slot;
+		int next = (hole + 1) & mask;
+		while (this.keys[next] != EMPTY) {
+			int home = hash(this.keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				this.keys[hole] = this.keys[next];
+				this.values[hole] = this.values[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		this.keys[hole] = EMPTY;
+		this.numEntries --;
+		if ((this.keys.length > MIN_CAPACITY) && 
+				(8 * this.numEntries < this.keys.length)) {
+			rehash(this.keys.length / 2);
+		}
+	}
+
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		double[] oldValues = this.values;
+		allocate(capacity);
+		for (int slot = 0; slot < oldKeys.length; slot ++) {
+			if (oldKeys[slot] != EMPTY) {
+				int newSlot = find(oldKeys[slot]);
+				this.keys[newSlot] = oldKeys[slot];
+				this.values[newSlot] = oldValues[slot];
+			}
+		}
+	}
+
+}
@@ -36,19 +36,23 @@ public class SymmetricMatrix {
 	// Diagonal elements
 	private double[] diagonal;
 	// Lower triangular elements by columns
-	private double[] lowerTriangle;
+	private MatrixStorage lowerTriangle;
 	// Minimum and maximum lower triangular values
 	private double minValue = Double.POSITIVE_INFINITY;
 	private double maxValue = Double.NEGATIVE_INFINITY;
 	// Maximum number of decimal digits in any element
 	private int maxDecimals = 0;
+	// Points whose Euclidean distances are the lower triangular elements, 
+	// by rows, or null
+	private double[] points = null;
+	private int dimension = 0;
 
 	public SymmetricMatrix(double[] lowerTriangle) {
 		int numElements = lowerTriangle.length;
 		int numRows = (1 + (int)Math.sqrt(1 + 8 * numElements)) / 2;
 		this.diagonal = new double[numRows];
 		Arrays.fill(this.diagonal, Double.NaN);
-		this.lowerTriangle = lowerTriangle;
+		this.lowerTriangle = new DoubleStorage(lowerTriangle);
 		for (int index = 0; index < numElements; index ++) {
 			double value = lowerTriangle[index];
 			this.minValue = Math.min(this.minValue, value);
@@ -62,21 +66,37 @@ public class SymmetricMatrix {
 	}
 
 	public SymmetricMatrix(int numRows) {
+		this(numRows, StorageType.DOUBLE);
+	}
+
+	// Matrix with the given elements, whose values are already known
+	public SymmetricMatrix(double[] diagonal, MatrixStorage lowerTriangle, 
+			double minValue, double maxValue, int maxDecimals) {
+		this.diagonal = diagonal;
+		this.lowerTriangle = lowerTriangle;
+		this.minValue = minValue;
+		this.maxValue = maxValue;
+		this.maxDecimals = maxDecimals;
+	}
+
+	public SymmetricMatrix(int numRows, StorageType storageType) {
 		this.diagonal = new double[numRows];
 		Arrays.fill(this.diagonal, Double.NaN);
-		int numElements = (numRows - 1) * numRows / 2;
-		this.lowerTriangle = new double[numElements];
-		Arrays.fill(this.lowerTriangle, Double.NaN);
+		long numElements = (long)(numRows - 1) * numRows / 2;
+		this.lowerTriangle = MatrixStorage.newStorage(storageType, numElements);
+		this.lowerTriangle.fill(Double.NaN);
 	}
 
 	public void setElement(int i, int j, double value) {
 		if (i == j) {
 			this.diagonal[i] = value;
 		} else {
-			int index = (i > j) ? getIndex(i, j) : getIndex(j, i);
-			this.lowerTriangle[index] = value;
-			this.minValue = Math.min(this.minValue, value);
-			this.maxValue = Math.max(this.maxValue, value);
+			long index = (i > j) ? getIndex(i, j) : getIndex(j, i);
+			this.lowerTriangle.set(index, value);
+			// Stored value, which may be rounded
+			double storedValue = this.lowerTriangle.get(index);
+			this.minValue = Math.min(this.minValue, storedValue);
+			this.maxValue = Math.max(this.maxValue, storedValue);
 		}
 		countDecimals(value);
 	}
@@ -98,13 +118,13 @@ public class SymmetricMatrix {
 		if (i == j) {
 			return this.diagonal[i];
 		} else {
-			int index = (i > j) ? getIndex(i, j) : getIndex(j, i);
-			return this.lowerTriangle[index];
+			long index = (i > j) ? getIndex(i, j) : getIndex(j, i);
+			return this.lowerTriangle.get(i, j, index);
 		}
 	}
 
-	private int getIndex(int i, int j) {
-		int n = this.diagonal.length;
+	private long getIndex(int i, int j) {
+		long n = this.diagonal.length;
 		return (2 * n - j - 1) * j / 2 + i - j - 1;
 	}
 
@@ -124,4 +144,72 @@ public class SymmetricMatrix {
 		return this.maxDecimals;
 	}
 
+	public void setPoints(double[] points, int dimension) {
+		this.points = points;
+		this.dimension = dimension;
+	}
+
+	// Shared with the matrix, not to be modified
+	public double[] getPoints() {
+		return this.points;
+	}
+
+	public int getDimension() {
+		return this.dimension;
+	}
+
+	public StorageType getStorageType() {
+		return this.lowerTriangle.getType();
+	}
+
+	// Only the lower triangular elements different from the missing value
+	// are stored
+	public boolean isSparse() {
+		return getStorageType().equals(StorageType.SPARSE);
+	}
+
+	public long numberOfStoredElements() {
+		if (isSparse()) {
+			return ((SparseStorage)this.lowerTriangle).numberOfEntries();
+		} else {
+			return this.lowerTriangle.size();
+		}
+	}
+
+	public double getMissingValue() {
+		return ((SparseStorage)this.lowerTriangle).getDefaultValue();
+	}
+
+	// Value of the lower triangular elements not stored in a sparse matrix
+	public void setMissingValue(double value) {
+		SparseStorage storage = (SparseStorage)this.lowerTriangle;
+		storage.setDefaultValue(value);
+		if (storage.numberOfEntries() < storage.size()) {
+			this.minValue = Math.min(this.minValue, value);
+			this.maxValue = Math.max(this.maxValue, value);
+			countDecimals(value);
+		}
+	}
+
+	// Rows and columns of the lower triangular elements stored in a sparse
+	// matrix, by columns
+	public int[][] storedElements() {
+		long[] indices = ((SparseStorage)this.lowerTriangle).sortedIndices();
+		int[][] elements = new int[2][indices.length];
+		long n = this.diagonal.length;
+		int j = 0;
+		long columnStart = 0;
+		long nextColumnStart = n - 1;
+		for (int k = 0; k < indices.length; k ++) {
+			while (indices[k] >= nextColumnStart) {
+				j ++;
+				columnStart = nextColumnStart;
+				nextColumnStart += n - j - 1;
+			}
+			elements[0][k] = (int)(indices[k] - columnStart) + j + 1;
+			elements[1][k] = j;
+		}
+		return elements;
+	}
+
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.core.definitions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Read-only storage of the distances between feature vectors, calculated
+ * when they are read. Each tile holds the distances of an element to a run
+ * of consecutive elements, so that rows are read at the cost of calculating
+ * them once, and the tiles are kept in a cache of bounded size
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class TileCacheStorage extends MatrixStorage {
+
+	private static final int DOUBLE_BYTES = 8;
+	// Approximate bytes of an entry of the cache besides its tile
+	private static final int ENTRY_BYTES = 96;
+
+	private final FeatureDistances distances;
+	private final int numElements;
+	private final int tileSize;
+	private final int numTileColumns;
+	private final Map<Long, double[]> tiles;
+
+	public TileCacheStorage(FeatureDistances distances, int numElements, 
+			int tileSize, long cacheBytes, EvictionType evictionType) {
+		this.distances = distances;
+		this.numElements = numElements;
+		this.tileSize = tileSize;
+		this.numTileColumns = (numElements + tileSize - 1) / tileSize;
+		final long maxTiles = Math.max(1, 
+				cacheBytes / (DOUBLE_BYTES * tileSize + ENTRY_BYTES));
+		this.tiles = new LinkedHashMap<Long, double[]>(16, 0.75f, 
+				evictionType.equals(EvictionType.LRU)) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, double[]> eldest) {
+				return size() > maxTiles;
+			}
+		};
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.LAZY;
+	}
+
+	@Override
+	public long size() {
+		return (long)this.numElements * (this.numElements - 1) / 2;
+	}
+
+	// Row and column of the lower triangle stored by columns
+	@Override
+	public double get(long index) {
+		long n = this.numElements;
+		double b = 2 * n - 1;
+		long j = (long)((b - Math.sqrt(b * b - 8.0 * index)) / 2.0);
+		while ((j > 0) && (columnStart(j) > index)) {
+			j --;
+		}
+		while (columnStart(j + 1) <= index) {
+			j ++;
+		}
+		int i = (int)(index - columnStart(j) + j + 1);
+		return get(i, (int)j, index);
+	}
+
+	private long columnStart(long j) {
+		return (2L * this.numElements - j - 1) * j / 2;
+	}
+
+	// Tiles by the row as it is read, the calculated distances are symmetric
+	@Override
+	public double get(int row, int column, long index) {
+		int tileColumn = column / this.tileSize;
+		Long key = Long.valueOf((long)row * this.numTileColumns + tileColumn);
+		double[] tile;
+		synchronized (this.tiles) {
+			tile = this.tiles.get(key);
+		}
+		if (tile == null) {
+			int firstColumn = tileColumn * this.tileSize;
+			int lastColumn = Math.min(firstColumn + this.tileSize, this.numElements);
+			tile = new double[lastColumn - firstColumn];
+			for (int j = firstColumn; j < lastColumn; j ++) {
+				tile[j - firstColumn] = (j == row) ? 0.0 : 
+						this.distances.distance(row, j);
+			}
+			synchronized (this.tiles) {
+				this.tiles.put(key, tile);
+			}
+		}
+		return tile[column - tileColumn * this.tileSize];
+	}
+
+	@Override
+	public void set(long index, double value) {
+		throw new UnsupportedOperationException("Lazy distances are read-only");
+	}
+
+}
@@ -31,18 +31,38 @@ package multidendrograms.core.utils;
  ******************************************************************************/
 public class MathUtils {
 
+	// Powers of ten exactly represented as doubles
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 
+		1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
 	public static double round(double number, int precision) {
-		double factor = Math.pow(10, precision);
+		double factor = factor(precision);
+		return quantize(number, factor) / factor;
+	}
+
+	// Scale of the values rounded to the given number of decimals
+	public static double factor(int precision) {
+		if ((precision >= 0) && (precision < POWERS_OF_TEN.length)) {
+			return POWERS_OF_TEN[precision];
+		} else {
+			return Math.pow(10, precision);
+		}
+	}
+
+	// Rounded value multiplied by the factor, so that two values have the 
+	// same rounding if and only if they have the same integer
+	public static long quantize(double number, double factor) {
 		double x = number * factor;
-		double r = Math.round(x);
+		long r = Math.round(x);
 		if (r < x) {
 			double epsilon = 1.0e-4;
-			double rs = Math.round(x + epsilon);
-			if (rs - r > 0.5) {
+			long rs = Math.round(x + epsilon);
+			if (rs > r) {
 				r = rs;
 			}
 		}
-		return r / factor;
+		return r;
 	}
 
 }
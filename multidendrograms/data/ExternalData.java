@@ -18,10 +18,12 @@
 
 package multidendrograms.data;
 
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
 import multidendrograms.core.definitions.SymmetricMatrix;
 import multidendrograms.initial.LogManager;
 
@@ -30,8 +32,9 @@ import multidendrograms.initial.LogManager;
  * <b>MultiDendrograms</b>
  * </p>
  *
- * Given a text file representing a proximity matrix between elements,
- * gets all the proximity values between elements and stores them into a list
+ * Given a text or binary file representing a proximity matrix between
+ * elements, or a text file of feature vectors of the elements, gets all the
+ * proximity values between elements and stores them into a symmetric matrix
  *
  * @author Justo Montiel, David Torres, Sergio G&oacute;mez, Alberto Fern&aacute;ndez
  *
@@ -40,53 +43,70 @@ import multidendrograms.initial.LogManager;
 public class ExternalData {
 
 	private final DataFile dataFile;
-	LinkedList<ProximityPair<String>> proximityPairs;
 	private int numElements = 0;
 	private SymmetricMatrix proximityMatrix;
-	private Hashtable<String, Integer> hashNames;
-	private LinkedList<String> names;
+	private String[] names;
+
+	// Decimal digits preserved by single precision
+	private static final int FLOAT_DIGITS = 6;
 
 	public ExternalData(final DataFile dataFile) throws Exception {
+		this(dataFile, StorageType.DOUBLE);
+	}
+
+	public ExternalData(final DataFile dataFile, StorageType storageType) 
+			throws Exception {
+		this(dataFile, storageType, null);
+	}
+
+	// Binary files are mapped with the precision they were saved with,
+	// whatever the storage type
+	public ExternalData(final DataFile dataFile, StorageType storageType, 
+			ForkJoinPool pool) throws Exception {
 		this.dataFile = new DataFile(dataFile);
 
-		ReadTxt txt = new ReadTxt(dataFile.getPathName());
-		this.proximityPairs = txt.getData();
-		this.numElements = txt.getNumElements();
-
-		LogManager.LOG.config("Creating a matrix for " + this.numElements + " elements");
-
-		this.proximityMatrix = new SymmetricMatrix(this.numElements);
-		this.hashNames = new Hashtable<String, Integer>();
-		this.names = new LinkedList<String>();
-		int nextId = 0;
-		Iterator<ProximityPair<String>> iterPairs = this.proximityPairs.iterator();
-		while (iterPairs.hasNext()) {
-			ProximityPair<String> pair = iterPairs.next();
-
-			int id1;
-			String name1 = pair.getElement1();
-			if (this.hashNames.containsKey(name1)) {
-				id1 = this.hashNames.get(name1);
-			} else {
-				id1 = nextId;
-				nextId ++;
-				this.hashNames.put(name1, id1);
-				this.names.add(name1);
+		if (ReadBinary.isBinary(new File(dataFile.getPathName()))) {
+			ReadBinary bin = new ReadBinary(dataFile.getPathName());
+			this.numElements = bin.getNumElements();
+			this.proximityMatrix = bin.getProximityMatrix();
+			this.names = bin.getNames();
+		} else {
+			ReadTxt txt = new ReadTxt(dataFile.getPathName(), storageType, pool);
+			this.numElements = txt.getNumElements();
+			this.proximityMatrix = txt.getProximityMatrix();
+			this.names = txt.getNames();
+			if (storageType.equals(StorageType.FLOAT)) {
+				checkSinglePrecision(txt);
 			}
-			
-			int id2;
-			String name2 = pair.getElement2();
-			if (this.hashNames.containsKey(name2)) {
-				id2 = this.hashNames.get(name2);
-			} else {
-				id2 = nextId;
-				nextId ++;
-				this.hashNames.put(name2, id2);
-				this.names.add(name2);
-			}
-			
-			double proximity = pair.getProximity();
-			this.proximityMatrix.setElement(id1, id2, proximity);
+		}
+	}
+
+	// Text file of feature vectors, whose distances are calculated with the
+	// given metric
+	public ExternalData(final DataFile dataFile, MetricType metricType, 
+			StorageType storageType, ForkJoinPool pool) throws Exception {
+		this.dataFile = new DataFile(dataFile);
+		ReadFeatures features = new ReadFeatures(dataFile.getPathName(), metricType, 
+				storageType, pool);
+		this.numElements = features.getNumElements();
+		this.proximityMatrix = features.getProximityMatrix();
+		this.names = features.getNames();
+	}
+
+	private void checkSinglePrecision(ReadTxt txt) {
+		int precision = this.proximityMatrix.getPrecision();
+		int numLost = txt.numberOfLostValues(precision);
+		if (numLost > 0) {
+			LogManager.LOG.warning(numLost + " proximity values lost to rounding "
+					+ "in single precision, use double precision instead");
+		}
+		double maxAbsValue = txt.maximumAbsoluteValue();
+		int intDigits = (maxAbsValue < 1.0) ? 1 : 
+				1 + (int)Math.floor(Math.log10(maxAbsValue));
+		if (intDigits + precision > FLOAT_DIGITS) {
+			LogManager.LOG.warning("Single precision may not preserve ties "
+					+ "with " + intDigits + " integer and " + precision 
+					+ " decimal digits");
 		}
 	}
 
@@ -95,7 +115,7 @@ public class ExternalData {
 	}
 
 	public String[] getNames() {
-		return this.names.toArray(new String[this.names.size()]);
+		return this.names.clone();
 	}
 
 	public int getNumberOfElements() {
@@ -106,12 +126,12 @@ public class ExternalData {
 		return this.proximityMatrix;
 	}
 
-	public LinkedList<ProximityPair<String>> getData() {
-		return this.proximityPairs;
-	}
-
 	public int getPrecision() {
 		return this.proximityMatrix.getPrecision();
 	}
 
+	public void saveAsBinary(String path) throws IOException {
+		new ToBinary(this.proximityMatrix, this.names).saveAsBinary(path);
+	}
+
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import multidendrograms.core.definitions.MatrixStorage;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.errors.IncompatibleFileError;
+import multidendrograms.initial.Language;
+import multidendrograms.initial.LogManager;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Reads a binary file containing a proximity matrix. The header and the
+ * labels are followed by the diagonal and the packed lower triangle, which
+ * is mapped without copying it
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ */
+public class ReadBinary {
+
+	static final byte[] MAGIC = {'M', 'D', 'M', 'A', 'T', 'R', 'I', 'X'};
+	static final int VERSION = 1;
+	// Magic, version, element bytes, number of elements, precision, minimum
+	// and maximum values, and bytes of the labels
+	static final int HEADER_BYTES = 48;
+	static final int DOUBLE_BYTES = 8;
+	static final int FLOAT_BYTES = 4;
+	static final Charset LABELS_CHARSET = Charset.forName("UTF-8");
+
+	private final String fileName;
+	private int numElements = 0;
+	private String[] names = null;
+	private SymmetricMatrix proximityMatrix = null;
+
+	public ReadBinary(final String filePath) throws Exception {
+		fileName = filePath;
+		final RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = read(channel, 0, HEADER_BYTES);
+			byte[] magic = new byte[MAGIC.length];
+			header.get(magic);
+			int version = header.getInt();
+			int elementBytes = header.getInt();
+			numElements = header.getInt();
+			int precision = header.getInt();
+			double minValue = header.getDouble();
+			double maxValue = header.getDouble();
+			long labelsBytes = header.getLong();
+			if (!Arrays.equals(magic, MAGIC) || (version != VERSION) || 
+					((elementBytes != DOUBLE_BYTES) && (elementBytes != FLOAT_BYTES)) ||
+					(numElements < 1) || (labelsBytes < 0) || 
+					(labelsBytes > Integer.MAX_VALUE)) {
+				throw incompatibleFile();
+			}
+
+			ByteBuffer labels = read(channel, HEADER_BYTES, (int)labelsBytes);
+			names = new String[numElements];
+			for (int n = 0; n < numElements; n ++) {
+				if (labels.remaining() < 4) {
+					throw incompatibleFile();
+				}
+				int length = labels.getInt();
+				if ((length < 0) || (length > labels.remaining())) {
+					throw incompatibleFile();
+				}
+				byte[] bytes = new byte[length];
+				labels.get(bytes);
+				names[n] = new String(bytes, LABELS_CHARSET);
+			}
+
+			long position = alignedPosition(HEADER_BYTES + labelsBytes);
+			double[] diagonal = new double[numElements];
+			read(channel, position, DOUBLE_BYTES * numElements).asDoubleBuffer().get(diagonal);
+			position += DOUBLE_BYTES * numElements;
+
+			long numLower = (long)numElements * (numElements - 1) / 2;
+			if (position + numLower * elementBytes > channel.size()) {
+				throw incompatibleFile();
+			}
+			LogManager.LOG.config("Mapping a matrix for " + numElements + " elements");
+			MatrixStorage lowerTriangle = MatrixStorage.mapFile(channel, position, 
+					numLower, elementBytes == FLOAT_BYTES);
+			proximityMatrix = new SymmetricMatrix(diagonal, lowerTriangle, 
+					minValue, maxValue, precision);
+		} finally {
+			// Mappings remain valid after closing the file
+			file.close();
+		}
+	}
+
+	public static boolean isBinary(final File file) throws IOException {
+		if (!file.isFile() || (file.length() < HEADER_BYTES)) {
+			return false;
+		}
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			randomAccessFile.readFully(magic);
+			return Arrays.equals(magic, MAGIC);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	// First position multiple of the size of doubles
+	static long alignedPosition(long position) {
+		return (position + DOUBLE_BYTES - 1) / DOUBLE_BYTES * DOUBLE_BYTES;
+	}
+
+	private ByteBuffer read(FileChannel channel, long position, int length) 
+			throws IOException, IncompatibleFileError {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw incompatibleFile();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private IncompatibleFileError incompatibleFile() {
+		return new IncompatibleFileError(Language.getLabel(11) + " '" 
+				+ new File(fileName).getName() + "'");
+	}
+
+	public int getNumElements() {
+		return numElements;
+	}
+
+	public String[] getNames() {
+		return names;
+	}
+
+	public SymmetricMatrix getProximityMatrix() {
+		return proximityMatrix;
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import multidendrograms.core.definitions.FeatureDistances;
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.core.definitions.SymmetricMatrix;
+import multidendrograms.errors.IncompatibleFileError;
+import multidendrograms.initial.Language;
+import multidendrograms.initial.LogManager;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Reads a text file containing a table of feature vectors, one element per
+ * line with its label in the first column, and calculates the distances
+ * between them. A first line with non-numeric values, or with one column
+ * less than the other ones, is taken as a header and skipped
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ */
+public class ReadFeatures {
+
+	private static final int INITIAL_FEATURES = 64;
+
+	private final String fileName;
+	private int numElements = 0;
+	private String[] names = null;
+	private SymmetricMatrix proximityMatrix = null;
+
+	public ReadFeatures(final String filePath, MetricType metricType, 
+			StorageType storageType, ForkJoinPool pool) throws Exception {
+		fileName = filePath;
+
+		final File f = new File(fileName);
+		if (!f.exists()) {
+			throw new IOException(Language.getLabel(106) + ": '" + fileName + "'");
+		}
+		double[][] features;
+		final FileInputStream stream = new FileInputStream(f);
+		TxtTokenizer tokenizer = null;
+		try {
+			tokenizer = new TxtTokenizer(stream.getChannel(), 0, f.length());
+			features = read(tokenizer);
+		} catch (IOException e) {
+			throw new IOException(Language.getLabel(127) + " '" + fileName + "' "
+					+ Language.getLabel(128) + " " + tokenizer.getLineNumber());
+		} finally {
+			stream.close();
+		}
+
+		LogManager.LOG.config("Calculating the " + metricType + " distances between "
+				+ numElements + " elements with " + features[0].length + " features");
+		proximityMatrix = new FeatureDistances(features, metricType, storageType, 
+				pool).getDistanceMatrix();
+	}
+
+	public int getNumElements() {
+		return numElements;
+	}
+
+	public String[] getNames() {
+		return names;
+	}
+
+	public SymmetricMatrix getProximityMatrix() {
+		return proximityMatrix;
+	}
+
+	private double[][] read(TxtTokenizer tokenizer) throws Exception {
+		ArrayList<String> labels = new ArrayList<String>();
+		ArrayList<double[]> rows = new ArrayList<double[]>();
+		double[] values = new double[INITIAL_FEATURES];
+		while (tokenizer.nextLine()) {
+			if (!tokenizer.nextToken()) {
+				throw wrongColumnsCount(tokenizer.getLineNumber());
+			}
+			String label = tokenizer.tokenToString();
+			int numValues = 0;
+			boolean isNumeric = true;
+			while (tokenizer.nextToken()) {
+				if (numValues == values.length) {
+					values = Arrays.copyOf(values, 2 * numValues);
+				}
+				try {
+					values[numValues] = tokenizer.tokenToDouble();
+					if (Double.isNaN(values[numValues]) || 
+							Double.isInfinite(values[numValues])) {
+						throw new NumberFormatException();
+					}
+				} catch (NumberFormatException e) {
+					isNumeric = false;
+				}
+				numValues ++;
+			}
+			if (!isNumeric && (tokenizer.getLineNumber() == 1)) {
+				continue;
+			} else if (!isNumeric) {
+				throw new IncompatibleFileError(Language.getLabel(13) + " " 
+						+ tokenizer.getLineNumber() + ". " + Language.getLabel(125));
+			}
+			int numFeatures = rows.isEmpty() ? numValues : rows.get(0).length;
+			if ((tokenizer.getLineNumber() == 2) && (rows.size() == 1) && 
+					(numValues == numFeatures + 1)) {
+				// Header without a label for the first column
+				labels.clear();
+				rows.clear();
+				numFeatures = numValues;
+			}
+			if ((numValues == 0) || (numValues != numFeatures)) {
+				throw wrongColumnsCount(tokenizer.getLineNumber());
+			}
+			labels.add(label);
+			rows.add(Arrays.copyOf(values, numValues));
+		}
+		if (rows.isEmpty()) {
+			throw new IncompatibleFileError(Language.getLabel(103) + " '" 
+					+ new File(fileName).getName() + "'");
+		}
+
+		names = labels.toArray(new String[labels.size()]);
+		numElements = names.length;
+		return rows.toArray(new double[numElements][]);
+	}
+
+	private IncompatibleFileError wrongColumnsCount(int numLine) {
+		return new IncompatibleFileError(Language.getLabel(104) + " "
+				+ numLine + " " + Language.getLabel(105) + " '"
+				+ new File(fileName).getName() + "'");
+	}
+
+}
@@ -18,19 +18,24 @@
 
 package multidendrograms.data;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
-import java.util.StringTokenizer;
 
 import javax.swing.JOptionPane;
 
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.core.definitions.SymmetricMatrix;
 import multidendrograms.errors.IncompatibleFileError;
 import multidendrograms.initial.Language;
 import multidendrograms.initial.LogManager;
@@ -42,7 +47,11 @@ import multidendrograms.initial.InitialProperties;
  * </p>
  *
  * Reads a text file containing a proximity matrix in either list or matrix
- * format, with and without headers
+ * format, with and without headers. The format is detected from the first
+ * lines of the file, and the values are parsed in a single pass directly into
+ * a symmetric matrix. Large list files may be parsed in parallel by chunks of
+ * lines, and with sparse storage the pairs missing in list files are not
+ * stored
  *
  * @author Justo Montiel, David Torres, Sergio G&oacute;mez, Alberto Fern&aacute;ndez
  *
@@ -50,64 +59,73 @@ import multidendrograms.initial.InitialProperties;
  */
 public class ReadTxt {
 
+	// Lines read in advance to detect the format
+	private static final int LOOK_AHEAD_LINES = 5;
+	// Leading values kept from each line read in advance
+	private static final int LOOK_AHEAD_VALUES = 5;
+	private static final int INITIAL_PAIRS = 1024;
+	private static final int MAX_LOST_DECIMALS = 32;
+	// Minimum size of the chunks of list files parsed in parallel
+	private static final long MIN_CHUNK_BYTES = 1 << 22;
+	private static final int CHUNKS_PER_THREAD = 4;
+
 	private final String fileName;
-	private final LinkedList<String[]> dataList;
+	private final StorageType storageType;
+	private final boolean isSinglePrecision;
+	private final ForkJoinPool pool;
+	private TxtTokenizer tokenizer;
 	private int numElements = 0;
 	private String[] names = null;
-	private LinkedList<ProximityPair<String>> data;
+	private SymmetricMatrix proximityMatrix = null;
 	private double missingValue = InitialProperties.getMissingValue();
+	// Matrix format
+	private boolean lineHeaders;
+	private boolean columnHeaders;
+	private boolean lowerTriangular;
+	// Values lost in single precision, by the minimum number of decimals
+	// at which their rounding changes
+	private int[] numLostValues = null;
+	private double maxAbsValue = 0.0;
 
 	public ReadTxt(final String filePath) throws Exception {
+		this(filePath, StorageType.DOUBLE, null);
+	}
+
+	public ReadTxt(final String filePath, StorageType storageType) 
+			throws Exception {
+		this(filePath, storageType, null);
+	}
+
+	// Results do not depend on the pool, which is only used for list files
+	public ReadTxt(final String filePath, StorageType storageType, 
+			ForkJoinPool pool) throws Exception {
 		fileName = filePath;
-		dataList = saveInMemory();
-		int numLines = dataList.size();
-		int numCols = dataList.get(0).length;
-		// Matrix or list format
-		if (numCols != 3) {
-			// Lower triangular or general matrix
-			data = readMatrix();
-		} else {
-			// (numCols == 3)
-			if ((numLines != 3) && (numLines != 4)) {
-				data = readList();
-			} else {
-				// ((numLines == 3) || (numLines == 4))
-				boolean typeL, typeM;
-				LinkedList<ProximityPair<String>> lstL, lstM;
-				try {
-					typeL = true;
-					lstL = readList();
-				} catch (final Exception e) {
-					typeL = false;
-					lstL = null;
-				}
-				try {
-					typeM = true;
-					lstM = readMatrix();
-				} catch (final Exception e) {
-					typeM = false;
-					lstM = null;
-				}
-				if (typeL && typeM) {
-					// Unable to determine format
-					final String msg = Language.getLabel(10);
-					JOptionPane.showMessageDialog(null, msg, "Warning",
-							JOptionPane.WARNING_MESSAGE);
-					data = lstL;
-				} else if (typeL) {
-					data = lstL;
-				} else if (typeM) {
-					data = lstM;
-				} else {
-					throw new IncompatibleFileError(Language.getLabel(11));
-				}
-			}
+		this.storageType = storageType;
+		isSinglePrecision = storageType.equals(StorageType.FLOAT);
+		this.pool = pool;
+
+		final File f = new File(fileName);
+		if (!f.exists()) {
+			throw new IOException(Language.getLabel(106) + ": '" + fileName + "'");
+		}
+		final FileInputStream stream = new FileInputStream(f);
+		try {
+			FileChannel channel = stream.getChannel();
+			tokenizer = new TxtTokenizer(channel, 0, f.length());
+			read(channel);
+		} catch (IOException e) {
+			throw new IOException(Language.getLabel(127) + " '" + fileName + "' "
+					+ Language.getLabel(128) + " " + tokenizer.getLineNumber());
+		} finally {
+			stream.close();
 		}
 
-		if (LogManager.LOG.getLevel().equals(Level.FINER)) {
+		if (Level.FINER.equals(LogManager.LOG.getLevel())) {
 			LogManager.LOG.finer("---------- DATA ----------");
-			for (final ProximityPair<?> pair : data) {
-				LogManager.LOG.finer(pair.getElement1() + "\t" + pair.getElement2() + "\t" + pair.getProximity());
+			for (int i = 0; i < numElements; i ++) {
+				for (int j = i; j < numElements; j ++) {
+					LogManager.LOG.finer(names[i] + "\t" + names[j] + "\t" + proximityMatrix.getElement(i, j));
+				}
 			}
 		}
 	}
@@ -116,247 +134,563 @@ public class ReadTxt {
 		return numElements;
 	}
 
-	public LinkedList<ProximityPair<String>> getData() {
-		return data;
+	public String[] getNames() {
+		return names;
 	}
 
-	private LinkedList<String[]> saveInMemory() throws IncompatibleFileError, IOException {
-		final LinkedList<String[]> lstData = new LinkedList<String[]>();
+	public SymmetricMatrix getProximityMatrix() {
+		return proximityMatrix;
+	}
 
-		final File f = new File(fileName);
-		if (!f.exists()) {
-			throw new IOException(Language.getLabel(106) + ": '" + fileName + "'");
+	// Number of off-diagonal values whose rounding to the given decimals
+	// changes in single precision
+	int numberOfLostValues(int precision) {
+		int numLost = 0;
+		if (numLostValues != null) {
+			int maxDecimals = Math.min(precision, MAX_LOST_DECIMALS);
+			for (int d = 0; d <= maxDecimals; d ++) {
+				numLost += numLostValues[d];
+			}
 		}
+		return numLost;
+	}
 
-		int numLine = 0;
-		try {
-
-			final FileReader freader = new FileReader(f);
-			BufferedReader buff = new BufferedReader(freader);
+	double maximumAbsoluteValue() {
+		return maxAbsValue;
+	}
 
-			String line;
-			while ((line = buff.readLine()) != null) {
-  			line = line.trim();
-  			if (!line.equalsIgnoreCase("") && !line.startsWith("#")) {
-					numLine ++;
-					lstData.add(readLine(f, numLine, line));
+	private void read(FileChannel channel) throws Exception {
+		// Look-ahead
+		int numLines = 0;
+		int[] lineLengths = new int[LOOK_AHEAD_LINES];
+		double[][] leadingValues = new double[LOOK_AHEAD_LINES][LOOK_AHEAD_VALUES];
+		while ((numLines < LOOK_AHEAD_LINES) && tokenizer.nextLine()) {
+			Arrays.fill(leadingValues[numLines], Double.NaN);
+			int numTokens = 0;
+			while (tokenizer.nextToken()) {
+				if (numTokens < LOOK_AHEAD_VALUES) {
+					leadingValues[numLines][numTokens] = tokenValue();
 				}
+				numTokens ++;
 			}
-			buff.close();
-			if (numLine == 0) {
-  			throw new IncompatibleFileError(Language.getLabel(103) + " '" + f.getName() + "'");
+			if (numTokens == 0) {
+				throw wrongColumnsCount(tokenizer.getLineNumber());
 			}
+			lineLengths[numLines] = numTokens;
+			numLines ++;
+		}
+		if (numLines == 0) {
+			throw new IncompatibleFileError(Language.getLabel(103) + " '" + new File(fileName).getName() + "'");
+		}
+		boolean isWholeFile = !tokenizer.nextLine();
+		int firstLength = lineLengths[0];
+		int secondLength = (numLines > 1) ? lineLengths[1] : 0;
 
-		} catch (IOException e) {
-			throw new IOException(Language.getLabel(127) + " '" + fileName + "' "
-					+ Language.getLabel(128) + " " + numLine);
+		// Matrix or list format
+		if (isWholeFile) {
+			if (firstLength != 3) {
+				setMatrixFormat(numLines, firstLength, secondLength, lineLengths[numLines - 1]);
+				readMatrix();
+			} else if ((numLines != 3) && (numLines != 4)) {
+				readList();
+			} else {
+				readListOrMatrix(numLines, secondLength, lineLengths[numLines - 1]);
+			}
+		} else if (firstLength == 3) {
+			if ((pool != null) && (channel.size() >= 2 * MIN_CHUNK_BYTES)) {
+				readListInParallel(channel);
+			} else {
+				readList();
+			}
+		} else {
+			TxtTokenizer lastLine = new TxtTokenizer(channel, 
+					TxtTokenizer.lastLinePosition(channel, 0, channel.size()), 
+					channel.size());
+			lastLine.nextLine();
+			int lastLength = lastLine.skipTokens();
+			if (!detectMatrixFormat(firstLength, secondLength, lastLength, leadingValues)) {
+				// Format given by the number of lines
+				do {
+					numLines ++;
+					tokenizer.skipTokens();
+				} while (tokenizer.nextLine());
+				setMatrixFormat(numLines, firstLength, secondLength, lastLength);
+			}
+			readMatrix();
 		}
+	}
 
-		return lstData;
+	private double tokenValue() {
+		try {
+			return tokenizer.tokenToDouble();
+		} catch (final NumberFormatException e) {
+			return Double.NaN;
+		}
 	}
 
-	private String[] readLine(File f, int numLine, String line) throws IncompatibleFileError {
-		final String delims = " ,;|\t\n";
-		StringTokenizer st = new StringTokenizer(line, delims);
-		int numCols = st.countTokens();
-		if (numCols < 1) {
-			throw new IncompatibleFileError(Language.getLabel(104) + " "
-					+ numLine + " " + Language.getLabel(105) + " '"
-					+ f.getName() + "'");
+	private IncompatibleFileError wrongColumnsCount(int numLine) {
+		return new IncompatibleFileError(Language.getLabel(104) + " "
+				+ numLine + " " + Language.getLabel(105) + " '"
+				+ new File(fileName).getName() + "'");
+	}
+
+	private IncompatibleFileError nonNumericProximity(int numLine) {
+		// Data type error in third column
+		return new IncompatibleFileError(Language.getLabel(13)+ " " + numLine + ". "
+				+ Language.getLabel(14));
+	}
+
+	private void readListOrMatrix(int numLines, int secondLength, int lastLength) throws Exception {
+		// A failed list leaves the matrix untouched
+		boolean typeM, typeL;
+		try {
+			setMatrixFormat(numLines, 3, secondLength, lastLength);
+			readMatrix();
+			typeM = true;
+		} catch (final Exception e) {
+			typeM = false;
 		}
-		String[] dataLine = new String[numCols];
-		for (int col = 0; col < numCols; col ++) {
-			dataLine[col] = st.nextToken();
+		try {
+			readList();
+			typeL = true;
+		} catch (final Exception e) {
+			typeL = false;
+		}
+		if (typeL && typeM) {
+			// Unable to determine format
+			final String msg = Language.getLabel(10);
+			JOptionPane.showMessageDialog(null, msg, "Warning",
+					JOptionPane.WARNING_MESSAGE);
+		} else if (!typeL && !typeM) {
+			throw new IncompatibleFileError(Language.getLabel(11));
+		}
+	}
+
+	private void setMatrixFormat(int numLines, int firstLength, int secondLength, int lastLength) {
+		int numCols = Math.max(firstLength, lastLength);
+		if (numLines < numCols) {
+			// Headers in first column
+			setMatrixFormat(false, true, firstLength == 2, numLines);
+		} else if (numLines > numCols) {
+			// Headers in the first line
+			setMatrixFormat(true, false, secondLength == 1, numCols);
+		} else {
+			// Without headers (numLines == numCols)
+			setMatrixFormat(false, false, firstLength == 1, numCols);
 		}
-		return dataLine;
 	}
 
-	private LinkedList<ProximityPair<String>> readList() throws Exception {
-		// Temporary list and hash table
-		LinkedList<ProximityPair<String>> lstTmp = new LinkedList<ProximityPair<String>>();
-		final Hashtable<String, Integer> ht = new Hashtable<String, Integer>();
-		int ind = 0;
-		int numLine = 1;
-		Double proximity = null;
-		for (final String[] s : dataList) {
-			String a = s[0];
-			String b = s[1];
+	private void setMatrixFormat(boolean lineHeaders, boolean columnHeaders, 
+			boolean lowerTriangular, int numElements) {
+		this.lineHeaders = lineHeaders;
+		this.columnHeaders = columnHeaders;
+		this.lowerTriangular = lowerTriangular;
+		this.numElements = numElements;
+	}
+
+	// Format from the lengths of the first and last lines, and the symmetry of
+	// the leading values for general matrices
+	private boolean detectMatrixFormat(int firstLength, int secondLength, int lastLength, 
+			double[][] leadingValues) {
+		int numCols = Math.max(firstLength, lastLength);
+		if ((firstLength == 1) && (secondLength == 2)) {
+			setMatrixFormat(false, false, true, numCols);
+		} else if ((firstLength == 2) && (secondLength == 3)) {
+			setMatrixFormat(false, true, true, numCols - 1);
+		} else if ((firstLength > 1) && (secondLength == 1)) {
+			setMatrixFormat(true, false, true, numCols);
+		} else if (firstLength == secondLength) {
+			boolean withoutHeaders = isSymmetric(leadingValues, 0, 0);
+			boolean withLineHeaders = isSymmetric(leadingValues, 1, 0);
+			boolean withColumnHeaders = isSymmetric(leadingValues, 0, 1);
+			if (withoutHeaders && !withLineHeaders && !withColumnHeaders) {
+				setMatrixFormat(false, false, false, numCols);
+			} else if (!withoutHeaders && withLineHeaders && !withColumnHeaders) {
+				setMatrixFormat(true, false, false, numCols);
+			} else if (!withoutHeaders && !withLineHeaders && withColumnHeaders) {
+				setMatrixFormat(false, true, false, numCols - 1);
+			} else {
+				return false;
+			}
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private boolean isSymmetric(double[][] leadingValues, int firstLine, int firstColumn) {
+		int size = Math.min(LOOK_AHEAD_LINES - firstLine, LOOK_AHEAD_VALUES - firstColumn);
+		for (int i = 0; i < size; i ++) {
+			for (int j = 0; j <= i; j ++) {
+				double value = leadingValues[firstLine + i][firstColumn + j];
+				if (Double.isNaN(value) || (value != leadingValues[firstLine + j][firstColumn + i])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private void readList() throws Exception {
+		tokenizer.seek(0, 0);
+		final HashMap<String, Integer> ht = new HashMap<String, Integer>();
+		final ArrayList<String> labels = new ArrayList<String>();
+		int[] firsts = new int[INITIAL_PAIRS];
+		int[] seconds = new int[INITIAL_PAIRS];
+		double[] proximities = new double[INITIAL_PAIRS];
+		int numPairs = 0;
+		while (tokenizer.nextLine()) {
+			if (!tokenizer.nextToken()) {
+				throw wrongColumnsCount(tokenizer.getLineNumber());
+			}
+			String a = tokenizer.tokenToString();
+			String b = tokenizer.nextToken() ? tokenizer.tokenToString() : null;
+			double proximity;
 			try {
-				proximity = Double.parseDouble(s[2]);
+				if ((b == null) || !tokenizer.nextToken()) {
+					throw new NumberFormatException();
+				}
+				proximity = tokenizer.tokenToDouble();
 			} catch (final NumberFormatException e) {
-				// Data type error in third column
-				throw new IncompatibleFileError(Language.getLabel(13)+ " " + numLine + ". "
-						+ Language.getLabel(14));
-			}
-			if (!ht.containsKey(a)) {
-				ht.put(a, ind ++);
+				throw nonNumericProximity(tokenizer.getLineNumber());
 			}
-			if (!ht.containsKey(b)) {
-				ht.put(b, ind ++);
+			if (numPairs == proximities.length) {
+				firsts = Arrays.copyOf(firsts, 2 * numPairs);
+				seconds = Arrays.copyOf(seconds, 2 * numPairs);
+				proximities = Arrays.copyOf(proximities, 2 * numPairs);
 			}
-			lstTmp.add(new ProximityPair<String>(a, b, proximity));
-			numLine ++;
+			firsts[numPairs] = labelIndex(a, ht, labels);
+			seconds[numPairs] = labelIndex(b, ht, labels);
+			proximities[numPairs] = proximity;
+			numPairs ++;
 		}
 
 		// Elements names
-		numElements = ht.size();
-		names = new String[numElements];
-		final Enumeration<String> e = ht.keys();
-		while (e.hasMoreElements()) {
-			String name = e.nextElement();
-			names[ht.get(name)] = name;
-		}
+		names = labels.toArray(new String[labels.size()]);
+		newMatrix(names.length);
 
-		// Initialize matrix
-		double[][] table = new double[numElements][numElements];
-		for (int i = 0; i < numElements; i ++) {
-			for (int j = 0; j < numElements; j ++) {
-				table[i][j] = Double.NaN;
+		// The first value of each pair prevails
+		for (int p = 0; p < numPairs; p ++) {
+			if (Double.isNaN(proximityMatrix.getElement(firsts[p], seconds[p]))) {
+				setElement(firsts[p], seconds[p], proximities[p]);
 			}
 		}
+		fillMissingValues();
+	}
 
-		LinkedList<ProximityPair<String>> lst = new LinkedList<ProximityPair<String>>();
-		for (final ProximityPair<?> pair : lstTmp) {
-			int i = ht.get(pair.getElement1());
-			int j = ht.get(pair.getElement2());
-			proximity = pair.getProximity();
-			if (i > j) {
-				int aux = i;
-				i = j;
-				j = aux;
-			}
-			if (Double.isNaN(table[i][j])) {
-				table[i][j] = proximity;
-				lst.add(new ProximityPair<String>(names[i], names[j], proximity));
+	private void fillMissingValues() {
+		if (proximityMatrix.isSparse()) {
+			// Unassigned distances are not stored
+			if (proximityMatrix.numberOfStoredElements() < (long)numElements * (numElements - 1) / 2) {
+				String msg = Language.getLabel(15) + ": " + missingValue;
+				LogManager.LOG.warning(msg);
 			}
+			proximityMatrix.setMissingValue(missingValue);
+			return;
 		}
-
 		boolean first = true;
 		for (int i = 0; i < numElements; i ++) {
-			if (Double.isNaN(table[i][i])) {
-				lst.add(new ProximityPair<String>(names[i], names[i], Double.NaN));
-			}
 			for (int j = i + 1; j < numElements; j ++) {
 				// Unassigned distances
-				if (Double.isNaN(table[i][j])) {
+				if (Double.isNaN(proximityMatrix.getElement(i, j))) {
 					if (first) {
 						String msg = Language.getLabel(15) + ": " + missingValue;
 						LogManager.LOG.warning(msg);
 						first = false;
 					}
-					table[i][j] = missingValue;
-					lst.add(new ProximityPair<String>(names[i], names[j], missingValue));
+					setElement(i, j, missingValue);
 				}
 			}
 		}
-
-		return lst;
 	}
 
-	private LinkedList<ProximityPair<String>> readMatrix() throws Exception {
-		LinkedList<ProximityPair<String>> lst = null;
-		boolean columnHeaders;
-		boolean lowerTriangular;
+	private void readListInParallel(FileChannel channel) throws Exception {
+		long size = channel.size();
+		int numChunks = (int)Math.min(CHUNKS_PER_THREAD * pool.getParallelism(), 
+				size / MIN_CHUNK_BYTES);
+		ConcurrentHashMap<String, Label> labels = new ConcurrentHashMap<String, Label>(
+				16, 0.75f, pool.getParallelism());
+		ListChunk[] chunks = new ListChunk[numChunks];
+		long start = 0;
+		for (int c = 0; c < numChunks; c ++) {
+			long end = size;
+			if (c < numChunks - 1) {
+				end = TxtTokenizer.nextLinePosition(channel, 
+						Math.max(start, size * (c + 1) / numChunks), size);
+			}
+			chunks[c] = new ListChunk(c, new TxtTokenizer(channel, start, end), 
+					labels);
+			pool.execute(chunks[c]);
+			start = end;
+		}
+		int numLines = 0;
+		for (int c = 0; c < numChunks; c ++) {
+			ListChunk chunk = chunks[c];
+			chunk.join();
+			if (chunk.readError != null) {
+				throw chunk.readError;
+			} else if (chunk.errorLine > 0) {
+				int numLine = numLines + chunk.errorLine;
+				throw chunk.isWrongColumnsCount ? wrongColumnsCount(numLine) : 
+						nonNumericProximity(numLine);
+			}
+			numLines += chunk.numLines;
+		}
 
-		Iterator<String[]> iter = dataList.iterator();
-		int numLines = dataList.size();
-		int numCols = Math.max(dataList.get(0).length, dataList.get(numLines-1).length);
-		int numLine = 1;
-		if (numLines < numCols) {
-			// Headers in first column
-			columnHeaders = true;
-			numElements = numLines;
-			names = new String[numElements];
-			if (dataList.get(0).length == 2) {
-				// Lower triangular matrix
-				lowerTriangular = true;
-			} else {
-				lowerTriangular = false;
+		// Elements names, in order of first occurrence
+		Label[] sortedLabels = labels.values().toArray(new Label[labels.size()]);
+		Arrays.sort(sortedLabels, new Comparator<Label>() {
+			@Override
+			public int compare(Label label1, Label label2) {
+				long position1 = label1.firstPosition.get();
+				long position2 = label2.firstPosition.get();
+				return (position1 < position2) ? -1 : ((position1 == position2) ? 0 : 1);
 			}
-		} else {
-			// (numLines >= numCols)
-			columnHeaders = false;
-			numElements = numCols;
-			if (numLines > numCols) {
-				// Headers in the first line
-				names = iter.next();
-				numLine ++;
-				if (dataList.get(1).length == 1) {
-					// Lower triangular matrix
-					lowerTriangular = true;
-				} else {
-					lowerTriangular = false;
-				}
-			} else {
-				// Without headers (numLines == numCols)
-				names = new String[numElements];
-				for (int n = 1; n <= numElements; n ++) {
-					names[n-1] = Integer.toString(n);
-				}
-				if (dataList.get(0).length == 1) {
-					// Lower triangular matrix
-					lowerTriangular = true;
-				} else {
-					lowerTriangular = false;
+		});
+		names = new String[sortedLabels.length];
+		for (int n = 0; n < sortedLabels.length; n ++) {
+			sortedLabels[n].index = n;
+			names[n] = sortedLabels[n].name;
+		}
+		newMatrix(names.length);
+
+		// The first value of each pair prevails
+		for (int c = 0; c < numChunks; c ++) {
+			ListChunk chunk = chunks[c];
+			for (int p = 0; p < chunk.numPairs; p ++) {
+				int i = chunk.firsts[p].index;
+				int j = chunk.seconds[p].index;
+				if (Double.isNaN(proximityMatrix.getElement(i, j))) {
+					setElement(i, j, chunk.proximities[p]);
 				}
 			}
+			chunks[c] = null;
 		}
-		lst = readTable(columnHeaders, lowerTriangular, numCols, numLine, iter);
-		return lst;
+		fillMissingValues();
 	}
 
-	private LinkedList<ProximityPair<String>> readTable(boolean columnHeaders, boolean lowerTriangular, int numCols,
-			int numLine, Iterator<String[]> iter) throws IncompatibleFileError {
-		double[][] table = new double[numElements][numElements];
-		int row = 0;
-		while (iter.hasNext()) {
-			if (!columnHeaders && (row >= numCols)) {
-				throw new IncompatibleFileError(Language.getLabel(100));
+	private static class Label {
+
+		private final String name;
+		// Position in the file of the first occurrence
+		private final AtomicLong firstPosition;
+		private int index;
+
+		public Label(String name, long position) {
+			this.name = name;
+			this.firstPosition = new AtomicLong(position);
+		}
+
+		public void occurrence(long position) {
+			long first = this.firstPosition.get();
+			while ((position < first) && 
+					!this.firstPosition.compareAndSet(first, position)) {
+				first = this.firstPosition.get();
 			}
-			String[] tmp = iter.next();
-			for (int col = 0; col < tmp.length; col ++) {
-				if (columnHeaders && (col == 0)) {
-					names[row] = tmp[0];
-				} else if ((columnHeaders && (col == row + 1)) || (!columnHeaders && (col == row))) {
-					table[row][row] = Double.parseDouble(tmp[col]);
-				} else if (columnHeaders) {
-					try {
-						table[row][col-1] = Double.parseDouble(tmp[col]);
-						if (lowerTriangular) {
-							table[col-1][row] = table[row][col-1];
-						}
-					} catch (NumberFormatException e) {
-						throw new IncompatibleFileError(Language.getLabel(125));
+		}
+
+	}
+
+	private class ListChunk extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long chunkPosition;
+		private final TxtTokenizer chunkTokenizer;
+		private final ConcurrentHashMap<String, Label> labels;
+		private Label[] firsts = new Label[INITIAL_PAIRS];
+		private Label[] seconds = new Label[INITIAL_PAIRS];
+		private double[] proximities = new double[INITIAL_PAIRS];
+		private int numPairs = 0;
+		private int numLines = 0;
+		// Line of the first error in the chunk, if any
+		private int errorLine = 0;
+		private boolean isWrongColumnsCount = false;
+		private IOException readError = null;
+
+		public ListChunk(int chunk, TxtTokenizer chunkTokenizer, 
+				ConcurrentHashMap<String, Label> labels) {
+			// Chunk and line in the chunk, sorted as in the file
+			this.chunkPosition = (long)chunk << 32;
+			this.chunkTokenizer = chunkTokenizer;
+			this.labels = labels;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				while (this.chunkTokenizer.nextLine()) {
+					this.numLines ++;
+					if (!this.chunkTokenizer.nextToken()) {
+						this.errorLine = this.numLines;
+						this.isWrongColumnsCount = true;
+						return;
 					}
-				} else if (!columnHeaders) {
+					String a = this.chunkTokenizer.tokenToString();
+					String b = this.chunkTokenizer.nextToken() ? 
+							this.chunkTokenizer.tokenToString() : null;
+					double proximity;
 					try {
-						table[row][col] = Double.parseDouble(tmp[col]);
-						if (lowerTriangular) {
-							table[col][row] = table[row][col];
+						if ((b == null) || !this.chunkTokenizer.nextToken()) {
+							throw new NumberFormatException();
 						}
-					} catch (NumberFormatException e) {
-						throw new IncompatibleFileError(Language.getLabel(125));
+						proximity = this.chunkTokenizer.tokenToDouble();
+					} catch (final NumberFormatException e) {
+						this.errorLine = this.numLines;
+						return;
+					}
+					if (this.numPairs == this.proximities.length) {
+						this.firsts = Arrays.copyOf(this.firsts, 2 * this.numPairs);
+						this.seconds = Arrays.copyOf(this.seconds, 2 * this.numPairs);
+						this.proximities = Arrays.copyOf(this.proximities, 2 * this.numPairs);
 					}
+					long position = this.chunkPosition + 2L * this.numLines;
+					this.firsts[this.numPairs] = label(a, position);
+					this.seconds[this.numPairs] = label(b, position + 1);
+					this.proximities[this.numPairs] = proximity;
+					this.numPairs ++;
 				}
+			} catch (IOException e) {
+				this.readError = e;
 			}
-			numLine ++;
-			row ++;
 		}
 
-		// Check symmetry
-		LinkedList<ProximityPair<String>> lst = new LinkedList<ProximityPair<String>>();
-		for (int i = 0; i < numElements; i ++) {
-			lst.add(new ProximityPair<String>(names[i], names[i], table[i][i]));
-			for (int j = i + 1; j < numElements; j ++) {
-				if (table[i][j] == table[j][i]) {
-					lst.add(new ProximityPair<String>(names[i], names[j], table[i][j]));
-				} else {
+		private Label label(String name, long position) {
+			Label label = this.labels.get(name);
+			if (label == null) {
+				Label newLabel = new Label(name, position);
+				label = this.labels.putIfAbsent(name, newLabel);
+				if (label == null) {
+					return newLabel;
+				}
+			}
+			label.occurrence(position);
+			return label;
+		}
+
+	}
+
+	private int labelIndex(String label, HashMap<String, Integer> ht, 
+			ArrayList<String> labels) {
+		Integer index = ht.get(label);
+		if (index == null) {
+			index = labels.size();
+			ht.put(label, index);
+			labels.add(label);
+		}
+		return index;
+	}
+
+	private void readMatrix() throws Exception {
+		tokenizer.seek(0, 0);
+		names = new String[numElements];
+		if (lineHeaders) {
+			tokenizer.nextLine();
+			int col = 0;
+			while (tokenizer.nextToken()) {
+				if (col < numElements) {
+					names[col] = tokenizer.tokenToString();
+				}
+				col ++;
+			}
+			if (col != numElements) {
+				throw wrongColumnsCount(tokenizer.getLineNumber());
+			}
+		} else if (!columnHeaders) {
+			for (int n = 1; n <= numElements; n ++) {
+				names[n-1] = Integer.toString(n);
+			}
+		}
+		newMatrix(numElements);
+
+		// Number of values in each row
+		int[] rowLengths = new int[numElements];
+		int row = 0;
+		while (tokenizer.nextLine()) {
+			if (row >= numElements) {
+				throw new IncompatibleFileError(Language.getLabel(100));
+			}
+			if (columnHeaders) {
+				if (!tokenizer.nextToken()) {
+					throw wrongColumnsCount(tokenizer.getLineNumber());
+				}
+				names[row] = tokenizer.tokenToString();
+			}
+			int col = 0;
+			while (tokenizer.nextToken()) {
+				if (col >= numElements) {
+					throw wrongColumnsCount(tokenizer.getLineNumber());
+				}
+				double value;
+				try {
+					value = tokenizer.tokenToDouble();
+				} catch (NumberFormatException e) {
+					throw new IncompatibleFileError(Language.getLabel(125));
+				}
+				if (lowerTriangular || (col >= row)) {
+					setElement(row, col, value);
+				} else if (storedValue(value) != upperValue(col, row, rowLengths)) {
 					// Non-symmetric matrix error
 					throw new IncompatibleFileError(Language.getLabel(12));
 				}
+				col ++;
+			}
+			if ((col == 0) && !columnHeaders) {
+				throw wrongColumnsCount(tokenizer.getLineNumber());
+			}
+			rowLengths[row] = col;
+			row ++;
+		}
+
+		// Missing values in short rows
+		for (int i = 0; i < numElements; i ++) {
+			if (rowLengths[i] <= i) {
+				setElement(i, i, 0.0);
+			}
+			if (lowerTriangular) {
+				for (int j = rowLengths[i]; j < i; j ++) {
+					if (rowLengths[j] <= i) {
+						setElement(i, j, 0.0);
+					}
+				}
+			} else {
+				for (int j = Math.max(i + 1, rowLengths[i]); j < numElements; j ++) {
+					setElement(i, j, 0.0);
+				}
+			}
+		}
+	}
+
+	// Value above the diagonal, already read or missing
+	private double upperValue(int i, int j, int[] rowLengths) {
+		return (rowLengths[i] > j) ? proximityMatrix.getElement(i, j) : 0.0;
+	}
+
+	private double storedValue(double value) {
+		return isSinglePrecision ? (float)value : value;
+	}
+
+	private void newMatrix(int numElements) {
+		this.numElements = numElements;
+		LogManager.LOG.config("Creating a matrix for " + numElements + " elements");
+		proximityMatrix = new SymmetricMatrix(numElements, storageType);
+		if (isSinglePrecision) {
+			numLostValues = new int[MAX_LOST_DECIMALS + 1];
+			maxAbsValue = 0.0;
+		}
+	}
+
+	private void setElement(int i, int j, double value) {
+		proximityMatrix.setElement(i, j, value);
+		if (isSinglePrecision && (i != j) && !Double.isNaN(value)) {
+			maxAbsValue = Math.max(maxAbsValue, Math.abs(value));
+			double error = Math.abs(value - (float)value);
+			if (error > 0.0) {
+				// Rounding error visible from these decimals on
+				int numDecimals = (int)Math.ceil(Math.log10(0.5 / error));
+				numLostValues[Math.max(0, Math.min(numDecimals, MAX_LOST_DECIMALS))] ++;
 			}
 		}
-		return lst;
 	}
 
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.data;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.core.definitions.SymmetricMatrix;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Save proximity matrix as binary file, in little-endian order. Matrices
+ * with single precision storage keep their elements as floats
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ */
+public class ToBinary {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final SymmetricMatrix matrix;
+	private final String[] names;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	public ToBinary(SymmetricMatrix matrix, String[] names) {
+		this.matrix = matrix;
+		this.names = names;
+	}
+
+	public void saveAsBinary(String path) throws IOException {
+		boolean isSinglePrecision = this.matrix.getStorageType().equals(StorageType.FLOAT);
+		int numElements = this.matrix.numberOfRows();
+		byte[][] labels = new byte[numElements][];
+		long labelsBytes = 0;
+		for (int n = 0; n < numElements; n ++) {
+			labels[n] = this.names[n].getBytes(ReadBinary.LABELS_CHARSET);
+			labelsBytes += 4 + labels[n].length;
+		}
+		FileOutputStream stream = new FileOutputStream(path);
+		try {
+			this.channel = stream.getChannel();
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			this.buffer.put(ReadBinary.MAGIC);
+			this.buffer.putInt(ReadBinary.VERSION);
+			this.buffer.putInt(isSinglePrecision ? ReadBinary.FLOAT_BYTES : ReadBinary.DOUBLE_BYTES);
+			this.buffer.putInt(numElements);
+			this.buffer.putInt(this.matrix.getPrecision());
+			this.buffer.putDouble(this.matrix.minimumValue());
+			this.buffer.putDouble(this.matrix.maximumValue());
+			this.buffer.putLong(labelsBytes);
+			for (int n = 0; n < numElements; n ++) {
+				reserve(4);
+				this.buffer.putInt(labels[n].length);
+				for (int b = 0; b < labels[n].length; b ++) {
+					reserve(1);
+					this.buffer.put(labels[n][b]);
+				}
+			}
+			long labelsEnd = ReadBinary.HEADER_BYTES + labelsBytes;
+			for (long p = labelsEnd; p < ReadBinary.alignedPosition(labelsEnd); p ++) {
+				reserve(1);
+				this.buffer.put((byte)0);
+			}
+			for (int i = 0; i < numElements; i ++) {
+				reserve(ReadBinary.DOUBLE_BYTES);
+				this.buffer.putDouble(this.matrix.getElement(i, i));
+			}
+			// Lower triangle by columns, as stored in the matrix
+			for (int j = 0; j < numElements; j ++) {
+				for (int i = j + 1; i < numElements; i ++) {
+					if (isSinglePrecision) {
+						reserve(ReadBinary.FLOAT_BYTES);
+						this.buffer.putFloat((float)this.matrix.getElement(i, j));
+					} else {
+						reserve(ReadBinary.DOUBLE_BYTES);
+						this.buffer.putDouble(this.matrix.getElement(i, j));
+					}
+				}
+			}
+			flush();
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void reserve(int numBytes) throws IOException {
+		if (this.buffer.remaining() < numBytes) {
+			flush();
+		}
+	}
+
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/******************************************************************************
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Splits a region of a text file into lines and tokens, reading the bytes
+ * directly from the file channel. Blank lines and comment lines are skipped,
+ * and numeric tokens are parsed without creating strings
+ *
+ * @author Sergio Gomez, Alberto Fernandez, Justo Montiel, David Torres
+ *
+ * @since JDK 6.0
+ ******************************************************************************/
+class TxtTokenizer {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final int NULL_MARK = -1;
+	// Significant digits and powers of ten exactly representable as doubles
+	private static final int MAX_EXACT_DIGITS = 15;
+	private static final double[] EXACT_POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	private static final int MAX_EXPONENT = 1000;
+
+	private final FileChannel channel;
+	private final long end;
+	private final Charset charset = Charset.defaultCharset();
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	// Position in the file of the first byte in the buffer
+	private long bufferPosition;
+	private int position = 0;
+	private int limit = 0;
+	// First byte to keep in the buffer when it is refilled
+	private int mark = NULL_MARK;
+	private int tokenStart = 0;
+	private int tokenEnd = 0;
+	private boolean isEndOfLine = true;
+	private int numLine = 0;
+	private long linePosition;
+
+	public TxtTokenizer(FileChannel channel, long start, long end) {
+		this.channel = channel;
+		this.end = end;
+		this.bufferPosition = start;
+		this.linePosition = start;
+	}
+
+	// Restarts at the given position, which must be the start of a line
+	public void seek(long position, int numLine) {
+		this.bufferPosition = position;
+		this.position = 0;
+		this.limit = 0;
+		this.mark = NULL_MARK;
+		this.isEndOfLine = true;
+		this.numLine = numLine;
+		this.linePosition = position;
+	}
+
+	// Number of lines with data read so far
+	public int getLineNumber() {
+		return this.numLine;
+	}
+
+	// Position in the file of the start of the current line
+	public long getLinePosition() {
+		return this.linePosition;
+	}
+
+	// Advances to the next line with data, returns false at the end
+	public boolean nextLine() throws IOException {
+		if (!this.isEndOfLine) {
+			skipLine();
+		}
+		while (true) {
+			this.linePosition = this.bufferPosition + this.position;
+			int b = peek();
+			while ((b >= 0) && (b <= ' ') && !isTerminator(b)) {
+				this.position ++;
+				b = peek();
+			}
+			if (b < 0) {
+				this.isEndOfLine = true;
+				return false;
+			} else if (isTerminator(b)) {
+				this.position ++;
+			} else if (b == '#') {
+				skipLine();
+			} else {
+				this.isEndOfLine = false;
+				this.numLine ++;
+				return true;
+			}
+		}
+	}
+
+	private void skipLine() throws IOException {
+		int b = peek();
+		while ((b >= 0) && !isTerminator(b)) {
+			this.position ++;
+			b = peek();
+		}
+		if (b >= 0) {
+			this.position ++;
+		}
+	}
+
+	// Advances to the next token of the current line, returns false at its end
+	public boolean nextToken() throws IOException {
+		if (this.isEndOfLine) {
+			return false;
+		}
+		int b = peek();
+		while ((b >= 0) && isDelimiter(b)) {
+			this.position ++;
+			b = peek();
+		}
+		if ((b < 0) || isTerminator(b)) {
+			this.isEndOfLine = true;
+			return false;
+		}
+		this.mark = this.position;
+		do {
+			this.position ++;
+			b = peek();
+		} while ((b >= 0) && !isDelimiter(b) && !isTerminator(b));
+		this.tokenStart = this.mark;
+		this.tokenEnd = this.position;
+		this.mark = NULL_MARK;
+		return true;
+	}
+
+	// Number of remaining tokens in the current line
+	public int skipTokens() throws IOException {
+		int numTokens = 0;
+		while (nextToken()) {
+			numTokens ++;
+		}
+		return numTokens;
+	}
+
+	public String tokenToString() {
+		return new String(this.buffer, this.tokenStart, 
+				this.tokenEnd - this.tokenStart, this.charset);
+	}
+
+	// Same value as Double.parseDouble, which is only called for the tokens
+	// out of the exact fast path
+	public double tokenToDouble() {
+		int i = this.tokenStart;
+		boolean isNegative = false;
+		if ((this.buffer[i] == '-') || (this.buffer[i] == '+')) {
+			isNegative = (this.buffer[i] == '-');
+			i ++;
+		}
+		long mantissa = 0;
+		int numDigits = 0;
+		int numSignificantDigits = 0;
+		int exponent = 0;
+		while ((i < this.tokenEnd) && isDigit(this.buffer[i])) {
+			mantissa = 10 * mantissa + (this.buffer[i] - '0');
+			numDigits ++;
+			if (mantissa > 0) {
+				numSignificantDigits ++;
+			}
+			if (numSignificantDigits > MAX_EXACT_DIGITS) {
+				return Double.parseDouble(tokenToString());
+			}
+			i ++;
+		}
+		if ((i < this.tokenEnd) && (this.buffer[i] == '.')) {
+			i ++;
+			while ((i < this.tokenEnd) && isDigit(this.buffer[i])) {
+				mantissa = 10 * mantissa + (this.buffer[i] - '0');
+				numDigits ++;
+				if (mantissa > 0) {
+					numSignificantDigits ++;
+				}
+				if (numSignificantDigits > MAX_EXACT_DIGITS) {
+					return Double.parseDouble(tokenToString());
+				}
+				exponent --;
+				i ++;
+			}
+		}
+		if ((numDigits > 0) && (i < this.tokenEnd) && 
+				((this.buffer[i] == 'e') || (this.buffer[i] == 'E'))) {
+			i ++;
+			boolean isNegativeExponent = false;
+			if ((i < this.tokenEnd) && 
+					((this.buffer[i] == '-') || (this.buffer[i] == '+'))) {
+				isNegativeExponent = (this.buffer[i] == '-');
+				i ++;
+			}
+			int exponentStart = i;
+			int explicitExponent = 0;
+			while ((i < this.tokenEnd) && isDigit(this.buffer[i])) {
+				if (explicitExponent < MAX_EXPONENT) {
+					explicitExponent = 10 * explicitExponent + (this.buffer[i] - '0');
+				}
+				i ++;
+			}
+			if (i == exponentStart) {
+				return Double.parseDouble(tokenToString());
+			}
+			exponent += isNegativeExponent ? -explicitExponent : explicitExponent;
+		}
+		if ((numDigits == 0) || (i < this.tokenEnd)) {
+			return Double.parseDouble(tokenToString());
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0.0;
+		} else if ((exponent >= 0) && (exponent < EXACT_POWERS_OF_TEN.length)) {
+			value = (double)mantissa * EXACT_POWERS_OF_TEN[exponent];
+		} else if ((exponent < 0) && (-exponent < EXACT_POWERS_OF_TEN.length)) {
+			value = (double)mantissa / EXACT_POWERS_OF_TEN[-exponent];
+		} else {
+			return Double.parseDouble(tokenToString());
+		}
+		return isNegative ? -value : value;
+	}
+
+	// Position of the start of the line following the given position
+	public static long nextLinePosition(FileChannel channel, long position, 
+			long end) throws IOException {
+		TxtTokenizer tokenizer = new TxtTokenizer(channel, position, end);
+		tokenizer.isEndOfLine = false;
+		tokenizer.skipLine();
+		return tokenizer.bufferPosition + tokenizer.position;
+	}
+
+	// Position of the start of the last line with data in the region, or -1
+	// if there is none, found reading the file backwards
+	public static long lastLinePosition(FileChannel channel, long start, 
+			long end) throws IOException {
+		byte[] block = new byte[BUFFER_SIZE];
+		// First non-blank byte of the line being scanned
+		int firstByte = -1;
+		long blockEnd = end;
+		while (blockEnd > start) {
+			int length = (int)Math.min(block.length, blockEnd - start);
+			long blockStart = blockEnd - length;
+			ByteBuffer byteBuffer = ByteBuffer.wrap(block, 0, length);
+			while (byteBuffer.hasRemaining()) {
+				long filePosition = blockStart + byteBuffer.position();
+				if (channel.read(byteBuffer, filePosition) < 0) {
+					throw new IOException("Unexpected end of file");
+				}
+			}
+			for (int k = length - 1; k >= 0; k --) {
+				int b = block[k] & 0xFF;
+				if (isTerminator(b)) {
+					if ((firstByte >= 0) && (firstByte != '#')) {
+						return blockStart + k + 1;
+					}
+					firstByte = -1;
+				} else if (b > ' ') {
+					firstByte = b;
+				}
+			}
+			blockEnd = blockStart;
+		}
+		return ((firstByte >= 0) && (firstByte != '#')) ? start : -1;
+	}
+
+	private static boolean isDigit(byte b) {
+		return (b >= '0') && (b <= '9');
+	}
+
+	private static boolean isTerminator(int b) {
+		return (b == '\n') || (b == '\r');
+	}
+
+	private static boolean isDelimiter(int b) {
+		return ((b <= ' ') && !isTerminator(b)) || 
+				(b == ',') || (b == ';') || (b == '|');
+	}
+
+	// Next byte without consuming it, or -1 at the end
+	private int peek() throws IOException {
+		if ((this.position == this.limit) && !fill()) {
+			return -1;
+		}
+		return this.buffer[this.position] & 0xFF;
+	}
+
+	private boolean fill() throws IOException {
+		int keep = (this.mark == NULL_MARK) ? this.limit : this.mark;
+		System.arraycopy(this.buffer, keep, this.buffer, 0, this.limit - keep);
+		this.bufferPosition += keep;
+		this.position -= keep;
+		this.limit -= keep;
+		if (this.mark != NULL_MARK) {
+			this.mark = 0;
+		}
+		if (this.limit == this.buffer.length) {
+			// Token longer than the buffer
+			this.buffer = Arrays.copyOf(this.buffer, 2 * this.buffer.length);
+		}
+		long filePosition = this.bufferPosition + this.limit;
+		if (filePosition >= this.end) {
+			return false;
+		}
+		int length = (int)Math.min(this.buffer.length - this.limit, 
+				this.end - filePosition);
+		int numRead = this.channel.read(
+				ByteBuffer.wrap(this.buffer, this.limit, length), filePosition);
+		if (numRead <= 0) {
+			return false;
+		}
+		this.limit += numRead;
+		return true;
+	}
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.dendrogram;
+
+import java.util.Arrays;
+
+import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.utils.MathUtils;
+import multidendrograms.types.BandHeight;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Flat clusters obtained cutting a dendrogram at several heights, equivalent
+ * to joining the elements whose ultrametric proximity is not beyond each height
+ *
+ * @author Justo Montiel, David Torres, Sergio G&oacute;mez, Alberto Fern&aacute;ndez
+ *
+ * @since JDK 6.0
+ */
+public class DendrogramCut {
+
+	private final Dendrogram[] leaves;
+	private final double[] heights;
+	// Cluster of each leaf by height, numbered from 1 in the order of the leaves
+	private final int[][] clusters;
+	private final int[] numClusters;
+
+	public DendrogramCut(Dendrogram root, double height) {
+		this(new Dendrogram[] {root}, new double[] {height}, BandHeight.BAND_BOTTOM);
+	}
+
+	// Trees of a forest are cut one after the other
+	public DendrogramCut(Dendrogram[] roots, double[] heights, BandHeight bandHeight) {
+		int numLeaves = 0;
+		for (Dendrogram root : roots) {
+			numLeaves += root.numberOfLeaves();
+		}
+		this.leaves = new Dendrogram[numLeaves];
+		int position = 0;
+		for (Dendrogram root : roots) {
+			for (int n = 0; n < root.numberOfLeaves(); n ++) {
+				this.leaves[position] = root.getLeaf(n);
+				position ++;
+			}
+		}
+		this.heights = heights.clone();
+		this.clusters = new int[heights.length][numLeaves];
+		this.numClusters = new int[heights.length];
+		if (roots.length > 0) {
+			cut(roots, bandHeight.equals(BandHeight.BAND_BOTTOM));
+		}
+	}
+
+	// Single traversal from the roots. The heights are sorted from the
+	// nearest, so that the heights still to be cut at a node, those nearer
+	// than all its ancestors, are always the first ones. A node takes the
+	// ones not nearer than itself, and its subtree is not visited if none
+	// remains.
+	private void cut(Dendrogram[] roots, boolean useBandBottom) {
+		boolean isDistanceBased = roots[0].isDistanceBased;
+		double factor = MathUtils.factor(roots[0].precision);
+		int numHeights = this.heights.length;
+		long[] levels = new long[numHeights];
+		for (int h = 0; h < numHeights; h ++) {
+			levels[h] = MathUtils.quantize(this.heights[h], factor);
+		}
+		// Heights sorted with the rank of their level in the high bits
+		long[] sortedLevels = levels.clone();
+		Arrays.sort(sortedLevels);
+		int numDistinct = 0;
+		for (int k = 0; k < numHeights; k ++) {
+			if ((numDistinct == 0) || 
+					(sortedLevels[k] != sortedLevels[numDistinct - 1])) {
+				sortedLevels[numDistinct] = sortedLevels[k];
+				numDistinct ++;
+			}
+		}
+		long[] keys = new long[numHeights];
+		for (int h = 0; h < numHeights; h ++) {
+			int rank = Arrays.binarySearch(sortedLevels, 0, numDistinct, 
+					levels[h]);
+			if (!isDistanceBased) {
+				rank = numDistinct - 1 - rank;
+			}
+			keys[h] = ((long)rank << 32) | h;
+		}
+		Arrays.sort(keys);
+		int[] order = new int[numHeights];
+		for (int k = 0; k < numHeights; k ++) {
+			order[k] = (int)keys[k];
+			sortedLevels[k] = levels[order[k]];
+		}
+		// Depth-first stack of nodes, their first leaf and their heights
+		int capacity = Math.max(this.leaves.length, 1);
+		Dendrogram[] nodes = new Dendrogram[capacity];
+		int[] firstLeaves = new int[capacity];
+		int[] numOpen = new int[capacity];
+		int size = 0;
+		int position = 0;
+		for (Dendrogram root : roots) {
+			nodes[size] = root;
+			firstLeaves[size] = position;
+			numOpen[size] = numHeights;
+			size ++;
+			position += root.numberOfLeaves();
+			while (size > 0) {
+				size --;
+				Dendrogram node = nodes[size];
+				int first = firstLeaves[size];
+				int open = numOpen[size];
+				int numLeaves = node.numberOfLeaves();
+				int numSubclusters = node.numberOfSubclusters();
+				int taken;
+				if (numSubclusters == 1) {
+					taken = 0;
+				} else {
+					long level = MathUtils.quantize(useBandBottom ? 
+							node.getRootBottomHeight() : 
+							node.getRootInternalHeight(), factor);
+					taken = open;
+					while ((taken > 0) && 
+							!isBeyond(sortedLevels[taken - 1], level, 
+									isDistanceBased)) {
+						taken --;
+					}
+				}
+				for (int k = taken; k < open; k ++) {
+					int h = order[k];
+					this.numClusters[h] ++;
+					Arrays.fill(this.clusters[h], first, first + numLeaves, 
+							this.numClusters[h]);
+				}
+				if (taken > 0) {
+					// Subclusters pushed in reverse order to be numbered in order
+					int last = first + numLeaves;
+					for (int n = numSubclusters - 1; n >= 0; n --) {
+						Dendrogram subcluster = node.getSubcluster(n);
+						last -= subcluster.numberOfLeaves();
+						nodes[size] = subcluster;
+						firstLeaves[size] = last;
+						numOpen[size] = taken;
+						size ++;
+					}
+				}
+			}
+		}
+	}
+
+	// Height nearer than the level of a node, tied if the levels are equal
+	private static boolean isBeyond(long level, long nodeLevel, 
+			boolean isDistanceBased) {
+		return isDistanceBased ? (level < nodeLevel) : (level > nodeLevel);
+	}
+
+	public int numberOfHeights() {
+		return this.heights.length;
+	}
+
+	public double getHeight(int h) {
+		return this.heights[h];
+	}
+
+	public int numberOfClusters(int h) {
+		return this.numClusters[h];
+	}
+
+	public int numberOfLeaves() {
+		return this.leaves.length;
+	}
+
+	public Dendrogram getLeaf(int position) {
+		return this.leaves[position];
+	}
+
+	public int getCluster(int h, int position) {
+		return this.clusters[h][position];
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+package multidendrograms.dendrogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import multidendrograms.core.definitions.Dendrogram;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Save the cluster of each element as text file
+ *
+ * @author Justo Montiel, David Torres, Sergio G&oacute;mez, Alberto Fern&aacute;ndez
+ *
+ * @since JDK 6.0
+ */
+public class ToClusters {
+
+	private String[] labels;
+	private int[] clusters;
+
+	// Clusters numbered from 1 in the order of the roots
+	public ToClusters(Dendrogram[] roots) {
+		int numElements = 0;
+		for (Dendrogram root : roots) {
+			numElements += root.numberOfLeaves();
+		}
+		this.labels = new String[numElements];
+		this.clusters = new int[numElements];
+		for (int r = 0; r < roots.length; r ++) {
+			Dendrogram root = roots[r];
+			for (int n = 0; n < root.numberOfLeaves(); n ++) {
+				// Leaves identifiers follow the order of the elements
+				Dendrogram leaf = root.getLeaf(n);
+				int element = leaf.getIdentifier() - 1;
+				this.labels[element] = leaf.getLabel();
+				this.clusters[element] = r + 1;
+			}
+		}
+	}
+
+	// Clusters of a cut at one of its heights
+	public ToClusters(DendrogramCut cut, int h) {
+		int numElements = cut.numberOfLeaves();
+		this.labels = new String[numElements];
+		this.clusters = new int[numElements];
+		for (int n = 0; n < numElements; n ++) {
+			Dendrogram leaf = cut.getLeaf(n);
+			int element = leaf.getIdentifier() - 1;
+			this.labels[element] = leaf.getLabel();
+			this.clusters[element] = cut.getCluster(h, n);
+		}
+	}
+
+	public int getCluster(int element) {
+		return this.clusters[element];
+	}
+
+	public void saveAsTxt(String path) throws IOException {
+		File file = new File(path);
+		FileWriter fileWriter = new FileWriter(file);
+		PrintWriter printWriter = new PrintWriter(fileWriter);
+		for (int n = 0; n < this.labels.length; n ++) {
+			printWriter.println(this.labels[n] + "\t" + this.clusters[n]);
+		}
+		printWriter.close();
+	}
+
+}
@@ -40,18 +40,25 @@ import multidendrograms.utils.NumberUtils;
  */
 public class ToTxt {
 
-	private Dendrogram root;
+	private Dendrogram[] roots;
 	private PrintWriter printWriter;
 
 	public ToTxt(Dendrogram root) {
-		this.root = root;
+		this(new Dendrogram[] {root});
+	}
+
+	// Trees of a forest, one after the other
+	public ToTxt(Dendrogram[] roots) {
+		this.roots = roots;
 	}
 
 	public void saveAsTxt(String path) throws IOException {
 		File file = new File(path);
 		FileWriter fileWriter = new FileWriter(file);
 		this.printWriter = new PrintWriter(fileWriter);
-		showCluster(this.root, "");
+		for (Dendrogram root : this.roots) {
+			showCluster(root, "");
+		}
 		this.printWriter.close();
 	}
 
@@ -67,7 +74,7 @@ public class ToTxt {
 				pmin = pmax;
 				pmax = tmp;
 			}
-			int precision = this.root.precision;
+			int precision = cluster.precision;
 			pmin = MathUtils.round(pmin, precision);
 			pmax = MathUtils.round(pmax, precision);
 			String spmin = NumberUtils.format(pmin, precision);
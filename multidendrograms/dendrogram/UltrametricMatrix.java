@@ -25,6 +25,7 @@ import java.io.PrintWriter;
 import java.util.Hashtable;
 
 import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.StorageType;
 import multidendrograms.core.definitions.SymmetricMatrix;
 import multidendrograms.core.utils.MathUtils;
 import multidendrograms.core.utils.SmartAxis;
@@ -52,6 +53,11 @@ public class UltrametricMatrix {
 
 	public UltrametricMatrix(Dendrogram root, String[] externLabels,
 			OriginType originType, BandHeight bandHeight) {
+		this(root, externLabels, originType, bandHeight, StorageType.DOUBLE);
+	}
+
+	public UltrametricMatrix(Dendrogram root, String[] externLabels,
+			OriginType originType, BandHeight bandHeight, StorageType storageType) {
 		this.precision = root.precision;
 		this.labels = externLabels;
 		this.hashLabels = getSorting(externLabels);
@@ -59,7 +65,7 @@ public class UltrametricMatrix {
 		boolean useBandBottom = bandHeight.equals(BandHeight.BAND_BOTTOM) ? true : false;
 		SmartAxis smartAxis = new SmartAxis(root, isUniformOrigin);
 		double dendroBottomHeight = root.isDistanceBased ? smartAxis.smartMin() : smartAxis.smartMax();
-		this.ultraMatrix = new SymmetricMatrix(root.numberOfLeaves());
+		this.ultraMatrix = new SymmetricMatrix(root.numberOfLeaves(), storageType);
 		calculateUltrametricMatrix(root, dendroBottomHeight, isUniformOrigin, useBandBottom);
 	}
 
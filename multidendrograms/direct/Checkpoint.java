@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.direct;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.clusterings.HierarchicalClustering;
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.types.BandHeight;
+import multidendrograms.types.MethodType;
+import multidendrograms.types.OriginType;
+import multidendrograms.types.ProximityType;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * File with the parameters of a direct calculation and the state of its
+ * clustering between two iterations, saved periodically so that the
+ * calculation can be resumed
+ *
+ * @author Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * @since JDK 6.0
+ */
+public class Checkpoint {
+
+	private static final byte[] MAGIC = {'M', 'D', 'C', 'H', 'E', 'C', 'K', 'P'};
+	private static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	public static final long DEFAULT_MINUTES = 10;
+
+	private final String fileName;
+	private final long intervalMillis;
+	private long lastTime;
+
+	// Parameters of the clustering
+	private String dataFileName;
+	private int numElements;
+	private ProximityType proximityType;
+	private int precision;
+	private MethodType methodType;
+	private double methodParameter;
+	private boolean isWeighted;
+	private OriginType originType;
+	private BandHeight bandHeight;
+	private EngineType engineType;
+	private StorageType storageType;
+	// Metric of the distances between feature vectors, null for proximities
+	private MetricType metricType;
+
+	public Checkpoint(String fileName, long minutes) {
+		this.fileName = fileName;
+		this.intervalMillis = 60000L * minutes;
+		this.lastTime = System.currentTimeMillis();
+	}
+
+	public void setParameters(String dataFileName, int numElements,
+			ProximityType proximityType, int precision, MethodType methodType,
+			double methodParameter, boolean isWeighted, OriginType originType,
+			BandHeight bandHeight, EngineType engineType, StorageType storageType,
+			MetricType metricType) {
+		this.dataFileName = dataFileName;
+		this.numElements = numElements;
+		this.proximityType = proximityType;
+		this.precision = precision;
+		this.methodType = methodType;
+		this.methodParameter = methodParameter;
+		this.isWeighted = isWeighted;
+		this.originType = originType;
+		this.bandHeight = bandHeight;
+		this.engineType = engineType;
+		this.storageType = storageType;
+		this.metricType = metricType;
+	}
+
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	public boolean isDue() {
+		return (System.currentTimeMillis() - this.lastTime >= this.intervalMillis);
+	}
+
+	// Written to a temporary file first, so that the previous checkpoint is
+	// kept if the program stops while saving
+	public void save(HierarchicalClustering clustering) throws IOException {
+		File file = new File(this.fileName);
+		File tmpFile = new File(this.fileName + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmpFile), BUFFER_SIZE));
+		try {
+			out.write(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(this.dataFileName);
+			out.writeInt(this.numElements);
+			out.writeUTF(this.proximityType.name());
+			out.writeInt(this.precision);
+			out.writeUTF(this.methodType.name());
+			out.writeDouble(this.methodParameter);
+			out.writeBoolean(this.isWeighted);
+			out.writeUTF(this.originType.name());
+			out.writeUTF(this.bandHeight.name());
+			out.writeUTF(this.engineType.name());
+			out.writeUTF(this.storageType.name());
+			out.writeUTF((this.metricType == null) ? "" : this.metricType.name());
+			clustering.writeState(out);
+		} finally {
+			out.close();
+		}
+		if (!tmpFile.renameTo(file)) {
+			file.delete();
+			if (!tmpFile.renameTo(file)) {
+				throw new IOException("Checkpoint not saved: " + this.fileName);
+			}
+		}
+		this.lastTime = System.currentTimeMillis();
+	}
+
+	public void delete() {
+		new File(this.fileName).delete();
+	}
+
+	// Reads the parameters of the clustering
+	public void load() throws IOException {
+		DataInputStream in = open();
+		in.close();
+	}
+
+	// The clustering must have been created with the parameters read
+	public void restore(HierarchicalClustering clustering) throws IOException {
+		DataInputStream in = open();
+		try {
+			clustering.readState(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private DataInputStream open() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(this.fileName), BUFFER_SIZE));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			in.readFully(magic);
+			if (!Arrays.equals(magic, MAGIC) || (in.readInt() != VERSION)) {
+				throw new IOException("Not a checkpoint file: " + this.fileName);
+			}
+			this.dataFileName = in.readUTF();
+			this.numElements = in.readInt();
+			this.proximityType = ProximityType.valueOf(in.readUTF());
+			this.precision = in.readInt();
+			this.methodType = MethodType.valueOf(in.readUTF());
+			this.methodParameter = in.readDouble();
+			this.isWeighted = in.readBoolean();
+			this.originType = OriginType.valueOf(in.readUTF());
+			this.bandHeight = BandHeight.valueOf(in.readUTF());
+			this.engineType = EngineType.valueOf(in.readUTF());
+			this.storageType = StorageType.valueOf(in.readUTF());
+			String metricName = in.readUTF();
+			this.metricType = metricName.isEmpty() ? null : MetricType.valueOf(metricName);
+		} catch (IllegalArgumentException e) {
+			in.close();
+			throw new IOException("Wrong checkpoint file: " + this.fileName);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return in;
+	}
+
+	public String getDataFileName() {
+		return this.dataFileName;
+	}
+
+	public int getNumberOfElements() {
+		return this.numElements;
+	}
+
+	public ProximityType getProximityType() {
+		return this.proximityType;
+	}
+
+	public int getPrecision() {
+		return this.precision;
+	}
+
+	public MethodType getMethodType() {
+		return this.methodType;
+	}
+
+	public double getMethodParameter() {
+		return this.methodParameter;
+	}
+
+	public boolean isWeighted() {
+		return this.isWeighted;
+	}
+
+	public OriginType getOriginType() {
+		return this.originType;
+	}
+
+	public BandHeight getBandHeight() {
+		return this.bandHeight;
+	}
+
+	public EngineType getEngineType() {
+		return this.engineType;
+	}
+
+	public StorageType getStorageType() {
+		return this.storageType;
+	}
+
+	public MetricType getMetricType() {
+		return this.metricType;
+	}
+
+}
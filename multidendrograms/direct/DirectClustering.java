@@ -19,25 +19,33 @@
 package multidendrograms.direct;
 
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 
 import multidendrograms.core.clusterings.BetaFlexible;
 import multidendrograms.core.clusterings.Centroid;
 import multidendrograms.core.clusterings.CompleteLinkage;
+import multidendrograms.core.clusterings.EngineType;
 import multidendrograms.core.clusterings.HierarchicalClustering;
 import multidendrograms.core.clusterings.SingleLinkage;
 import multidendrograms.core.clusterings.VersatileLinkage;
 import multidendrograms.core.clusterings.Ward;
 import multidendrograms.core.definitions.Dendrogram;
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
 import multidendrograms.core.definitions.SymmetricMatrix;
 import multidendrograms.data.DataFile;
 import multidendrograms.data.ExternalData;
 import multidendrograms.dendrogram.ConnectedGraph;
 import multidendrograms.dendrogram.DendrogramMeasures;
+import multidendrograms.dendrogram.DendrogramCut;
+import multidendrograms.dendrogram.ToClusters;
 import multidendrograms.dendrogram.ToJson;
 import multidendrograms.dendrogram.ToNewick;
 import multidendrograms.dendrogram.ToTxt;
 import multidendrograms.dendrogram.UltrametricMatrix;
 import multidendrograms.initial.Language;
+import multidendrograms.initial.LogManager;
 import multidendrograms.initial.MethodName;
 import multidendrograms.types.BandHeight;
 import multidendrograms.types.MethodType;
@@ -64,6 +72,8 @@ public class DirectClustering {
 	public static final String TXT_TREE_SUFIX = "-tree.txt";
 	public static final String NEWICK_TREE_SUFIX = "-newick.txt";
 	public static final String JSON_TREE_SUFIX = ".json";
+	public static final String CLUSTERS_SUFIX = "-clusters.txt";
+	public static final String CUT_SUFIX = "-cut";
 
 	private DataFile dataFile;
 	private ExternalData externalData;
@@ -73,6 +83,9 @@ public class DirectClustering {
 	private OriginType originType;
 	private BandHeight bandHeight;
 	private HierarchicalClustering clustering;
+	// Early termination, by default when all the elements are in one cluster
+	private int numClusters = 1;
+	private double cutoff = Double.NaN;
 	private UltrametricMatrix ultraMatrix = null;
 	private DendrogramMeasures dendroMeasures = null;
 
@@ -80,14 +93,128 @@ public class DirectClustering {
 			int initialPrecision, MethodType methodType, double methodParameter,
 			boolean isWeighted, OriginType originType, BandHeight bandHeight)
 	throws Exception {
+		this(filename, proximityType, initialPrecision, methodType, methodParameter,
+		    isWeighted, originType, bandHeight, EngineType.VARIABLE_GROUP, 1,
+		    StorageType.DOUBLE);
+	}
+
+	public DirectClustering(String filename, ProximityType proximityType,
+			int initialPrecision, MethodType methodType, double methodParameter,
+			boolean isWeighted, OriginType originType, BandHeight bandHeight,
+			EngineType engineType, int numThreads, StorageType storageType)
+	throws Exception {
+		this(filename, proximityType, initialPrecision, methodType, methodParameter,
+		    isWeighted, originType, bandHeight, engineType, numThreads, storageType, null,
+		    null, 1, Double.NaN);
+	}
+
+	// The state of the clustering is saved periodically in the checkpoint, if
+	// any, which is deleted when the clustering is complete. The agglomeration
+	// stops with numClusters roots or before merging roots beyond the cutoff,
+	// NaN for none, leaving a forest. With a metric, the data file contains
+	// feature vectors instead of proximities.
+	public DirectClustering(String filename, ProximityType proximityType,
+			int initialPrecision, MethodType methodType, double methodParameter,
+			boolean isWeighted, OriginType originType, BandHeight bandHeight,
+			EngineType engineType, int numThreads, StorageType storageType,
+			MetricType metricType, Checkpoint checkpoint, int numClusters,
+			double cutoff) throws Exception {
 		this.dataFile = new DataFile(filename);
+		this.numClusters = numClusters;
+		this.cutoff = cutoff;
+		ForkJoinPool pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
 		try {
-			this.externalData = new ExternalData(this.dataFile);
-		} catch (Exception e) {
-			throw e;
+			this.externalData = loadData(this.dataFile, metricType, storageType, pool);
+			setParameters(proximityType, initialPrecision, methodType, methodParameter,
+			    isWeighted, originType, bandHeight);
+			printParameters(filename, metricType, methodType, methodParameter, isWeighted);
+			engineType = orderedEngine(engineType);
+			if (checkpoint != null) {
+				checkpoint.setParameters(this.dataFile.getPathName(),
+				    this.externalData.getNumberOfElements(), proximityType, this.precision,
+				    methodType, methodParameter, isWeighted, originType, bandHeight,
+				    engineType, storageType, metricType);
+			}
+			this.clustering = newClustering(methodType, this.externalData.getProximityMatrix(),
+			    this.externalData.getNames(), this.proximityType, this.precision, isWeighted,
+			    methodParameter, engineType);
+			this.clustering.setForkJoinPool(pool);
+			build(checkpoint);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
 		}
+	}
+
+	// Resumes the clustering saved in the checkpoint, and keeps saving it
+	public DirectClustering(Checkpoint checkpoint, int numThreads, int numClusters,
+			double cutoff) throws Exception {
+		checkpoint.load();
+		this.numClusters = numClusters;
+		this.cutoff = cutoff;
+		if (!orderedEngine(checkpoint.getEngineType()).equals(checkpoint.getEngineType())) {
+			throw new Exception("Checkpoint of the nearest-neighbor chain engine, "
+			    + "early termination not available");
+		}
+		this.dataFile = new DataFile(checkpoint.getDataFileName());
+		ForkJoinPool pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
+		try {
+			this.externalData = loadData(this.dataFile, checkpoint.getMetricType(),
+			    checkpoint.getStorageType(), pool);
+			if (this.externalData.getNumberOfElements() != checkpoint.getNumberOfElements()) {
+				throw new Exception("Data file modified: " + this.dataFile.getPathName());
+			}
+			MethodType methodType = checkpoint.getMethodType();
+			double methodParameter = checkpoint.getMethodParameter();
+			boolean isWeighted = checkpoint.isWeighted();
+			setParameters(checkpoint.getProximityType(), checkpoint.getPrecision(), methodType,
+			    methodParameter, isWeighted, checkpoint.getOriginType(), checkpoint.getBandHeight());
+			System.out.println("Checkpoint       : " + checkpoint.getFileName());
+			printParameters(this.dataFile.getPathName(), checkpoint.getMetricType(), methodType,
+			    methodParameter, isWeighted);
+			this.clustering = newClustering(methodType, this.externalData.getProximityMatrix(),
+			    this.externalData.getNames(), this.proximityType, this.precision, isWeighted,
+			    methodParameter, checkpoint.getEngineType());
+			this.clustering.setForkJoinPool(pool);
+			checkpoint.restore(this.clustering);
+			build(checkpoint);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	// Clustering of data already loaded, without printing the parameters
+	public DirectClustering(DataFile dataFile, ExternalData externalData,
+			ProximityType proximityType, int initialPrecision, MethodType methodType,
+			double methodParameter, boolean isWeighted, OriginType originType,
+			BandHeight bandHeight, EngineType engineType) throws Exception {
+		this.dataFile = dataFile;
+		this.externalData = externalData;
+		setParameters(proximityType, initialPrecision, methodType, methodParameter,
+		    isWeighted, originType, bandHeight);
+		this.clustering = newClustering(methodType, this.externalData.getProximityMatrix(),
+		    this.externalData.getNames(), this.proximityType, this.precision, isWeighted,
+		    methodParameter, engineType);
+		build(null);
+	}
+
+	// Proximities, or distances between the feature vectors with a metric
+	public static ExternalData loadData(DataFile dataFile, MetricType metricType,
+			StorageType storageType, ForkJoinPool pool) throws Exception {
+		if (metricType == null) {
+			return new ExternalData(dataFile, storageType, pool);
+		} else {
+			return new ExternalData(dataFile, metricType, storageType, pool);
+		}
+	}
+
+	private void setParameters(ProximityType proximityType, int initialPrecision,
+			MethodType methodType, double methodParameter, boolean isWeighted,
+			OriginType originType, BandHeight bandHeight) throws Exception {
 		this.proximityType = proximityType;
-		SymmetricMatrix proximityMatrix = this.externalData.getProximityMatrix();
 		this.precision = initialPrecision;
 		if (this.precision == DirectClustering.AUTO_PRECISION) {
 			this.precision = this.externalData.getPrecision();
@@ -97,29 +224,110 @@ public class DirectClustering {
 		this.originType = originType;
 		this.bandHeight = bandHeight;
 
-		if ((proximityMatrix.minimumValue() < 0.0) &&
+		if ((this.externalData.getProximityMatrix().minimumValue() < 0.0) &&
 				(methodType.equals(MethodType.VERSATILE_LINKAGE) ||
 				 methodType.equals(MethodType.GEOMETRIC_LINKAGE))) {
 			throw new Exception(Language.getLabel(80));
 		}
+	}
 
+	private void printParameters(String filename, MetricType metricType,
+			MethodType methodType, double methodParameter, boolean isWeighted) {
 		System.out.println("Data file        : " + filename);
-		System.out.println("Proximity type   : " + proximityType.toString().toLowerCase());
+		if (metricType != null) {
+			System.out.println("Metric           : " + metricType.toString().toLowerCase());
+		}
+		System.out.println("Proximity type   : " + this.proximityType.toString().toLowerCase());
 		System.out.println("Precision        : " + this.precision);
 		System.out.println("Method name      : " + methodType.toString().toLowerCase());
 		System.out.println("Method parameter : " + methodParameter);
 		System.out.println("Weighted         : " + isWeighted);
 		System.out.println("Origin           : " + this.originType.toString().toLowerCase());
+		if (this.numClusters > 1) {
+			System.out.println("Clusters         : " + this.numClusters);
+		}
+		if (!Double.isNaN(this.cutoff)) {
+			System.out.println("Cutoff           : " + this.cutoff);
+		}
 		System.out.println("---");
+	}
+
+	// Every engine except the nearest-neighbor chain merges in order of 
+	// proximity, so it can stop early
+	private EngineType orderedEngine(EngineType engineType) {
+		if (isTerminatedEarly() && 
+				engineType.equals(EngineType.NEAREST_NEIGHBOR_CHAIN)) {
+			LogManager.LOG.warning("Engine " + engineType.toString().toLowerCase()
+					+ " not available for early termination, using "
+					+ EngineType.VARIABLE_GROUP.toString().toLowerCase());
+			return EngineType.VARIABLE_GROUP;
+		}
+		return engineType;
+	}
+
+	private boolean isTerminatedEarly() {
+		return (this.numClusters > 1) || !Double.isNaN(this.cutoff);
+	}
 
-		this.clustering = newClustering(methodType, proximityMatrix, this.externalData.getNames(),
-		    proximityType, this.precision, isWeighted, methodParameter);
-		this.clustering.build();
+	// Interrupting the program cancels the clustering after the current
+	// iteration, and saves the checkpoint before exiting
+	private void build(Checkpoint checkpoint) throws Exception {
+		if ((checkpoint == null) || !this.clustering.supportsCheckpoints()) {
+			this.clustering.build(this.numClusters, this.cutoff);
+			return;
+		}
+		final HierarchicalClustering cancellable = this.clustering;
+		final CountDownLatch stopped = new CountDownLatch(1);
+		Thread shutdownHook = new Thread() {
+			@Override
+			public void run() {
+				cancellable.cancel();
+				try {
+					stopped.await();
+				} catch (InterruptedException e) {}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+		try {
+			while (!this.clustering.isStopped(this.numClusters, this.cutoff) && 
+					!this.clustering.isCancelled()) {
+				this.clustering.iteration();
+				if (checkpoint.isDue() && (this.clustering.numberOfRoots() > 1)) {
+					checkpoint.save(this.clustering);
+				}
+			}
+			if (this.clustering.isCancelled()) {
+				checkpoint.save(this.clustering);
+				throw new Exception("Clustering cancelled, checkpoint saved in "
+				    + checkpoint.getFileName());
+			}
+			checkpoint.delete();
+		} finally {
+			stopped.countDown();
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				// Already shutting down
+			}
+		}
 	}
 
 	public static String getFilePrefix(String pathNameNoExt,
 			ProximityType proximityType, int precision, MethodType methodType,
 			double methodParameter, boolean isWeighted) {
+		String prefix = getMethodPrefix(pathNameNoExt, proximityType, precision,
+		    methodType, isWeighted);
+		if (methodType.equals(MethodType.VERSATILE_LINKAGE) ||
+			methodType.equals(MethodType.BETA_FLEXIBLE)) {
+			prefix += methodParameter;
+		}
+		return prefix;
+	}
+
+	// Prefix common to all the values of the method parameter
+	public static String getMethodPrefix(String pathNameNoExt,
+			ProximityType proximityType, int precision, MethodType methodType,
+			boolean isWeighted) {
 		String prefix = pathNameNoExt;
 		if (proximityType.equals(ProximityType.DISTANCE)) {
 			prefix += "-d" + precision + "-";
@@ -135,18 +343,29 @@ public class DirectClustering {
 			prefix += "w";
 		}
 		prefix += MethodName.toShortName(methodType);
-		if (methodType.equals(MethodType.VERSATILE_LINKAGE) ||
-			methodType.equals(MethodType.BETA_FLEXIBLE)) {
-			prefix += methodParameter;
-		}
 		return prefix;
 	}
 
+	// Ultrametric matrices are full, so they are never sparse, and stored out
+	// of the heap for lazy proximities
+	private StorageType ultrametricStorageType() {
+		StorageType storageType = 
+				this.externalData.getProximityMatrix().getStorageType();
+		if (storageType.equals(StorageType.SPARSE)) {
+			return StorageType.DOUBLE;
+		} else if (storageType.equals(StorageType.LAZY)) {
+			return StorageType.MAPPED;
+		} else {
+			return storageType;
+		}
+	}
+
 	public void printMeasures() {
 		if (this.ultraMatrix == null) {
 			this.ultraMatrix = new UltrametricMatrix(this.clustering.getRoot(),
 					this.externalData.getNames(), this.originType,
-					this.bandHeight);
+					this.bandHeight,
+					ultrametricStorageType());
 		}
 		if (this.dendroMeasures == null) {
 			this.dendroMeasures = new DendrogramMeasures(
@@ -166,11 +385,26 @@ public class DirectClustering {
 		System.out.println("---");
 	}
 
+	public DendrogramMeasures getMeasures() {
+		if (this.ultraMatrix == null) {
+			this.ultraMatrix = new UltrametricMatrix(this.clustering.getRoot(),
+					this.externalData.getNames(), this.originType,
+					this.bandHeight,
+					ultrametricStorageType());
+		}
+		if (this.dendroMeasures == null) {
+			this.dendroMeasures = new DendrogramMeasures(this.externalData.getProximityMatrix(),
+					this.clustering.getRoot(), this.ultraMatrix.getMatrix());
+		}
+		return this.dendroMeasures;
+	}
+
 	public void saveMeasures() {
 		if (this.ultraMatrix == null) {
 			this.ultraMatrix = new UltrametricMatrix(this.clustering.getRoot(),
 					this.externalData.getNames(), this.originType,
-					this.bandHeight);
+					this.bandHeight,
+					ultrametricStorageType());
 		}
 		if (this.dendroMeasures == null) {
 			this.dendroMeasures = new DendrogramMeasures(this.externalData.getProximityMatrix(),
@@ -187,7 +421,8 @@ public class DirectClustering {
 	public void saveUltrametric() {
 		if (this.ultraMatrix == null) {
 			this.ultraMatrix = new UltrametricMatrix(this.clustering.getRoot(),
-					this.externalData.getNames(), this.originType, this.bandHeight);
+					this.externalData.getNames(), this.originType, this.bandHeight,
+					ultrametricStorageType());
 		}
 		String filename = this.filePrefix + DirectClustering.ULTRAMETRIC_SUFIX;
 		try {
@@ -200,7 +435,8 @@ public class DirectClustering {
 	public void saveGraph() {
 		if (this.ultraMatrix == null) {
 			this.ultraMatrix = new UltrametricMatrix(this.clustering.getRoot(),
-					this.externalData.getNames(), this.originType, this.bandHeight);
+					this.externalData.getNames(), this.originType, this.bandHeight,
+					ultrametricStorageType());
 		}
 		String filename = this.filePrefix + DirectClustering.GRAPH_SUFIX;
 		ConnectedGraph connectedGraph =
@@ -214,9 +450,18 @@ public class DirectClustering {
 		}
 	}
 
+	// More than one root if the agglomeration stopped early
+	public boolean isForest() {
+		return (this.clustering.numberOfRoots() > 1);
+	}
+
+	public Dendrogram[] getRoots() {
+		return this.clustering.getRoots();
+	}
+
 	public void saveAsTxt() {
 		String filename = this.filePrefix + DirectClustering.TXT_TREE_SUFIX;
-		ToTxt saveTxt = new ToTxt(this.clustering.getRoot());
+		ToTxt saveTxt = new ToTxt(this.clustering.getRoots());
 		try {
 			saveTxt.saveAsTxt(filename);
 		} catch (IOException e) {
@@ -248,9 +493,45 @@ public class DirectClustering {
 		}
 	}
 
+	public void saveClusters() {
+		String filename = this.filePrefix + DirectClustering.CLUSTERS_SUFIX;
+		ToClusters saveClusters = new ToClusters(this.clustering.getRoots());
+		try {
+			saveClusters.saveAsTxt(filename);
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	// Flat clusters at each height, from the forest if stopped early
+	public DendrogramCut cut(double[] heights) {
+		return new DendrogramCut(this.clustering.getRoots(), heights, this.bandHeight);
+	}
+
+	public void saveCuts(double[] heights) {
+		DendrogramCut cut = cut(heights);
+		for (int h = 0; h < heights.length; h ++) {
+			String filename = this.filePrefix + DirectClustering.CUT_SUFIX + heights[h] + ".txt";
+			ToClusters saveClusters = new ToClusters(cut, h);
+			try {
+				saveClusters.saveAsTxt(filename);
+			} catch (IOException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+	}
+
 	public static HierarchicalClustering newClustering(MethodType methodType,
 			SymmetricMatrix proximityMatrix, String[] labels, ProximityType proximityType,
 			int precision, boolean isWeighted, double methodParameter) {
+		return newClustering(methodType, proximityMatrix, labels, proximityType, precision,
+		    isWeighted, methodParameter, EngineType.VARIABLE_GROUP);
+	}
+
+	public static HierarchicalClustering newClustering(MethodType methodType,
+			SymmetricMatrix proximityMatrix, String[] labels, ProximityType proximityType,
+			int precision, boolean isWeighted, double methodParameter,
+			EngineType engineType) {
 		boolean isDistanceBased = proximityType.equals(ProximityType.DISTANCE) ? true : false;
 		double power;
 		HierarchicalClustering clustering;
@@ -291,6 +572,15 @@ public class DirectClustering {
 			clustering = null;
 			break;
 		}
+		if (clustering != null) {
+			if (clustering.supportsEngine(engineType)) {
+				clustering.setEngine(engineType);
+			} else {
+				LogManager.LOG.warning("Engine " + engineType.toString().toLowerCase()
+						+ " not available for " + methodType.toString().toLowerCase()
+						+ ", using " + clustering.getEngine().toString().toLowerCase());
+			}
+		}
 		return clustering;
 	}
 
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.direct;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.data.DataFile;
+import multidendrograms.data.ExternalData;
+import multidendrograms.dendrogram.DendrogramMeasures;
+import multidendrograms.types.BandHeight;
+import multidendrograms.types.MethodType;
+import multidendrograms.types.OriginType;
+import multidendrograms.types.ProximityType;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Calculates and exports the hierarchical clusterings of a data file for a
+ * list of values of the method parameter, reading the data only once, and
+ * summarizes their measures in a table
+ *
+ * @author Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * @since JDK 6.0
+ */
+public class ParameterSweep {
+
+	public static final String SWEEP_SUFIX = "-sweep.txt";
+
+	private DataFile dataFile;
+	private ExternalData externalData;
+	private ProximityType proximityType;
+	private int precision;
+	private MethodType methodType;
+	private boolean isWeighted;
+	private OriginType originType;
+	private BandHeight bandHeight;
+	private EngineType engineType;
+	private double[] parameters;
+	private DendrogramMeasures[] measures;
+	private String[] errors;
+
+	public ParameterSweep(DataFile dataFile, ExternalData externalData,
+			ProximityType proximityType, int initialPrecision, MethodType methodType,
+			double[] parameters, boolean isWeighted, OriginType originType,
+			BandHeight bandHeight, EngineType engineType) {
+		this.dataFile = dataFile;
+		this.externalData = externalData;
+		this.proximityType = proximityType;
+		this.precision = initialPrecision;
+		if (this.precision == DirectClustering.AUTO_PRECISION) {
+			this.precision = externalData.getPrecision();
+		}
+		this.methodType = methodType;
+		this.parameters = parameters;
+		this.isWeighted = isWeighted;
+		this.originType = originType;
+		this.bandHeight = bandHeight;
+		this.engineType = engineType;
+		this.measures = new DendrogramMeasures[parameters.length];
+		this.errors = new String[parameters.length];
+	}
+
+	// Values separated by commas, each one a number or a range FROM:TO:STEP
+	public static double[] parseParameters(String values) {
+		ArrayList<Double> parameters = new ArrayList<Double>();
+		for (String value : values.split(",")) {
+			String[] range = value.trim().split(":");
+			if (range.length == 1) {
+				parameters.add(Double.parseDouble(range[0]));
+			} else if (range.length == 3) {
+				// Decimal steps, without accumulated rounding errors
+				BigDecimal from = new BigDecimal(range[0]);
+				BigDecimal to = new BigDecimal(range[1]);
+				BigDecimal step = new BigDecimal(range[2]);
+				if (step.signum() <= 0) {
+					throw new NumberFormatException("Non-positive step '" + range[2] + "'");
+				}
+				for (BigDecimal p = from; p.compareTo(to) <= 0; p = p.add(step)) {
+					parameters.add(p.doubleValue());
+				}
+			} else {
+				throw new NumberFormatException("Wrong parameters '" + value + "'");
+			}
+		}
+		double[] array = new double[parameters.size()];
+		for (int n = 0; n < array.length; n ++) {
+			array[n] = parameters.get(n);
+		}
+		return array;
+	}
+
+	// Clusterings run concurrently in the pool, if any, each one using a
+	// single thread
+	public void run(ForkJoinPool pool) {
+		if (pool == null) {
+			for (int n = 0; n < this.parameters.length; n ++) {
+				run(n);
+			}
+		} else {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					SweepTask[] tasks = new SweepTask[parameters.length];
+					for (int n = 0; n < tasks.length; n ++) {
+						tasks[n] = new SweepTask(n);
+					}
+					invokeAll(tasks);
+				}
+			});
+		}
+	}
+
+	private class SweepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		public SweepTask(int index) {
+			this.index = index;
+		}
+
+		@Override
+		protected void compute() {
+			run(this.index);
+		}
+
+	}
+
+	private void run(int n) {
+		try {
+			DirectClustering dirClus = new DirectClustering(this.dataFile,
+					this.externalData, this.proximityType, this.precision,
+					this.methodType, this.parameters[n], this.isWeighted,
+					this.originType, this.bandHeight, this.engineType);
+			this.measures[n] = dirClus.getMeasures();
+			dirClus.saveMeasures();
+			dirClus.saveUltrametric();
+			dirClus.saveAsTxt();
+			dirClus.saveAsNewick();
+			dirClus.saveAsJson();
+		} catch (Exception e) {
+			this.errors[n] = e.getMessage();
+		}
+	}
+
+	public void printParameters() {
+		String values = "";
+		for (int n = 0; n < this.parameters.length; n ++) {
+			values += ((n == 0) ? "" : ", ") + this.parameters[n];
+		}
+		System.out.println("Data file        : " + this.dataFile.getPathName());
+		System.out.println("Proximity type   : " + this.proximityType.toString().toLowerCase());
+		System.out.println("Precision        : " + this.precision);
+		System.out.println("Method name      : " + this.methodType.toString().toLowerCase());
+		System.out.println("Method parameter : " + values);
+		System.out.println("Weighted         : " + this.isWeighted);
+		System.out.println("Origin           : " + this.originType.toString().toLowerCase());
+		System.out.println("---");
+	}
+
+	public void printSummary() {
+		PrintWriter printWriter = new PrintWriter(System.out);
+		writeSummary(printWriter);
+		printWriter.flush();
+	}
+
+	public void saveSummary() throws IOException {
+		String path = DirectClustering.getMethodPrefix(this.dataFile.getPathNameNoExt(),
+				this.proximityType, this.precision, this.methodType, this.isWeighted)
+				+ ParameterSweep.SWEEP_SUFIX;
+		PrintWriter printWriter = new PrintWriter(new FileWriter(new File(path)));
+		writeSummary(printWriter);
+		printWriter.close();
+	}
+
+	private void writeSummary(PrintWriter printWriter) {
+		printWriter.println("Method parameter"
+				+ "\t" + DendrogramMeasures.COPHENETIC_CORRELATION_LABEL
+				+ "\t" + DendrogramMeasures.SQUARED_ERROR_LABEL
+				+ "\t" + DendrogramMeasures.ABSOLUTE_ERROR_LABEL
+				+ "\t" + DendrogramMeasures.TREE_BALANCE_LABEL
+				+ "\t" + DendrogramMeasures.SPACE_DISTORTION_LABEL);
+		for (int n = 0; n < this.parameters.length; n ++) {
+			DendrogramMeasures m = this.measures[n];
+			if (m == null) {
+				printWriter.println(this.parameters[n] + "\tError: " + this.errors[n]);
+			} else {
+				printWriter.println(this.parameters[n]
+						+ "\t" + m.getCopheneticCorrelation()
+						+ "\t" + m.getSquaredError()
+						+ "\t" + m.getAbsoluteError()
+						+ "\t" + m.getTreeBalance()
+						+ "\t" + m.getSpaceDistortion());
+			}
+		}
+	}
+
+}
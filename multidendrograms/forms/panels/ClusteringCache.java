@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) Justo Montiel, David Torres, Sergio Gomez, Alberto Fernandez
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, see
+ * <http://www.gnu.org/licenses/>
+ */
+
+
+package multidendrograms.forms.panels;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import multidendrograms.core.clusterings.HierarchicalClustering;
+import multidendrograms.data.DataFile;
+import multidendrograms.data.ExternalData;
+import multidendrograms.types.MethodType;
+import multidendrograms.types.ProximityType;
+
+/**
+ * <p>
+ * <b>MultiDendrograms</b>
+ * </p>
+ *
+ * Data read from the current file, kept while the file is not modified, and
+ * the clusterings last calculated from it
+ *
+ * @author Justo Montiel, David Torres, Sergio G&oacute;mez, Alberto Fern&aacute;ndez
+ *
+ * @since JDK 6.0
+ */
+class ClusteringCache {
+
+	private static final int MAX_CLUSTERINGS = 8;
+
+	private String pathName = null;
+	private long lastModified = 0L;
+	private long length = 0L;
+	private ExternalData externalData = null;
+
+	// Finished clusterings, from the least to the most recently used
+	private final LinkedHashMap<String, HierarchicalClustering> clusterings =
+			new LinkedHashMap<String, HierarchicalClustering>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, HierarchicalClustering> eldest) {
+			return (size() > MAX_CLUSTERINGS);
+		}
+	};
+
+	// The file is read again only if its modification time or size have changed
+	public ExternalData getExternalData(DataFile dataFile) throws Exception {
+		File file = new File(dataFile.getPathName());
+		long lastModified = file.lastModified();
+		long length = file.length();
+		if ((this.externalData == null) || !dataFile.getPathName().equals(this.pathName)
+				|| (lastModified != this.lastModified) || (length != this.length)) {
+			this.externalData = null;
+			this.clusterings.clear();
+			this.externalData = new ExternalData(dataFile);
+			this.pathName = dataFile.getPathName();
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+		return this.externalData;
+	}
+
+	public static String getKey(MethodType methodType, double methodParameter,
+			boolean isWeighted, ProximityType proximityType, int precision) {
+		String key = methodType + " " + isWeighted + " " + proximityType + " " + precision;
+		if (methodType.equals(MethodType.VERSATILE_LINKAGE) ||
+			methodType.equals(MethodType.BETA_FLEXIBLE)) {
+			key += " " + methodParameter;
+		}
+		return key;
+	}
+
+	public HierarchicalClustering getClustering(String key) {
+		return this.clusterings.get(key);
+	}
+
+	// Only clusterings of the data currently kept
+	public void putClustering(String key, ExternalData externalData,
+			HierarchicalClustering clustering) {
+		if ((externalData == this.externalData) && (clustering.numberOfRoots() == 1)) {
+			this.clusterings.put(key, clustering);
+		}
+	}
+
+}
@@ -38,6 +38,7 @@ import javax.swing.SwingWorker;
 import javax.swing.event.InternalFrameEvent;
 import javax.swing.event.InternalFrameListener;
 
+import multidendrograms.core.clusterings.EngineType;
 import multidendrograms.core.clusterings.HierarchicalClustering;
 import multidendrograms.core.definitions.SymmetricMatrix;
 import multidendrograms.data.DataFile;
@@ -114,14 +115,26 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 	// MultiDendrogram
 	private HierarchicalClustering clustering = null;
 
+	// Data and clusterings reused by the following loads and updates
+	private final ClusteringCache cache = new ClusteringCache();
+
 	// SwingWorker MultiDendrogram computation
 	class MDComputation extends SwingWorker<Void, Void> {
 		private final String action;
 		private final int nbElements;
+		private final String key;
+		private final HierarchicalClustering mdClustering;
 
-		public MDComputation(final String action, final int nbElements) {
+		public MDComputation(final String action, final int nbElements, final String key) {
 			this.action = action;
 			this.nbElements = nbElements;
+			this.key = key;
+			this.mdClustering = clustering;
+		}
+
+		// Stops the computation after the current iteration
+		public void cancelComputation() {
+			this.mdClustering.cancel();
 		}
 
 		@Override
@@ -129,10 +142,10 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 			// Initialize progress property
 			int progress = 0;
 			setProgress(progress);
-			while (clustering.numberOfRoots() > 1) {
+			while ((this.mdClustering.numberOfRoots() > 1) && !this.mdClustering.isCancelled()) {
 				try {
-					clustering.iteration();
-					progress = 100 * (nbElements - clustering.numberOfRoots()) / (nbElements - 1);
+					this.mdClustering.iteration();
+					progress = 100 * (nbElements - this.mdClustering.numberOfRoots()) / (nbElements - 1);
 					setProgress(progress);
 				} catch (final Exception e) {
 					showError(e.getMessage());
@@ -143,14 +156,23 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 
 		@Override
 		public void done() {
-			showCalls(action);
-			progressBar.setString("");
-			progressBar.setBorderPainted(false);
-			progressBar.setValue(0);
-			principalDesk.setCursor(null); // turn off the wait cursor
+			if (!this.mdClustering.isCancelled()) {
+				cache.putClustering(key, externalData, this.mdClustering);
+				showCalls(action);
+			}
+			if ((mdComputation == this) || (mdComputation == null)) {
+				mdComputation = null;
+				progressBar.setString("");
+				progressBar.setBorderPainted(false);
+				progressBar.setValue(0);
+				principalDesk.setCursor(null); // turn off the wait cursor
+			}
 		}
 	}
 
+	// Running computation, cancelled by the following loads and updates
+	private MDComputation mdComputation = null;
+
 	public LoadUpdatePanel(final PrincipalDesk fr) {
 		super();
 		this.principalDesk = fr;
@@ -267,7 +289,6 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 		DataFile tmpDataFile;
 		boolean withData = false;
 		DendrogramParameters dendroParams;
-		MDComputation mdComputation;
 
 		if (evt.getActionCommand().equals(strLoad)) {
 			// LOAD
@@ -303,8 +324,12 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 			withData = true;
 		}
 		if (withData && (action.equals("Load") || action.equals("Reload"))) {
+			if (this.mdComputation != null) {
+				this.mdComputation.cancelComputation();
+				this.mdComputation = null;
+			}
 			try {
-				this.externalData = new ExternalData(dataFile);
+				this.externalData = this.cache.getExternalData(dataFile);
 				SymmetricMatrix proximityMatrix = this.externalData.getProximityMatrix();
 				MethodType methodType = SettingsPanel.getMethod();
 				if ((proximityMatrix.minimumValue() < 0.0) &&
@@ -316,20 +341,28 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 					if (action.equals("Load")) {
 						SettingsPanel.setPrecision(this.externalData.getPrecision());
 					}
-					this.clustering = null;
+					String key = ClusteringCache.getKey(methodType, SettingsPanel.getMethodParameter(),
+							SettingsPanel.isWeighted(), SettingsPanel.getProximityType(),
+							SettingsPanel.getPrecision());
+					this.clustering = this.cache.getClustering(key);
 					try {
-						this.clustering = DirectClustering.newClustering(methodType, proximityMatrix,
-								this.externalData.getNames(), SettingsPanel.getProximityType(),
-								SettingsPanel.getPrecision(), SettingsPanel.isWeighted(),
-								SettingsPanel.getMethodParameter());
-						this.progressBar.setBorderPainted(true);
-						this.progressBar.setString(null);
-						this.principalDesk.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-						// Instances of javax.swing.SwingWorker are not reusable,
-						// so we create new instances as needed.
-						mdComputation = new MDComputation(action, this.externalData.getNumberOfElements());
-						mdComputation.addPropertyChangeListener(this);
-						mdComputation.execute();
+						if (this.clustering != null) {
+							// Already calculated with the same settings
+							showCalls(action);
+						} else {
+							this.clustering = DirectClustering.newClustering(methodType, proximityMatrix,
+									this.externalData.getNames(), SettingsPanel.getProximityType(),
+									SettingsPanel.getPrecision(), SettingsPanel.isWeighted(),
+									SettingsPanel.getMethodParameter(), EngineType.VARIABLE_GROUP);
+							this.progressBar.setBorderPainted(true);
+							this.progressBar.setString(null);
+							this.principalDesk.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+							// Instances of javax.swing.SwingWorker are not reusable,
+							// so we create new instances as needed.
+							this.mdComputation = new MDComputation(action, this.externalData.getNumberOfElements(), key);
+							this.mdComputation.addPropertyChangeListener(this);
+							this.mdComputation.execute();
+						}
 					} catch (final Exception e2) {
 						buttonClicked = false;
 						showError(e2.getMessage());
@@ -494,7 +527,7 @@ public class LoadUpdatePanel extends JPanel implements ActionListener,
 
 	@Override
 	public void propertyChange(PropertyChangeEvent evt) {
-		if (evt.getPropertyName() == "progress") {
+		if ((evt.getPropertyName() == "progress") && (evt.getSource() == this.mdComputation)) {
 			int progress = (Integer) evt.getNewValue();
 			progressBar.setValue(progress);
 		}
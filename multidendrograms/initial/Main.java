@@ -23,13 +23,23 @@ import java.awt.Toolkit;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import javax.swing.JOptionPane;
 import javax.swing.ToolTipManager;
 
+import multidendrograms.core.clusterings.EngineType;
+import multidendrograms.core.definitions.EvictionType;
+import multidendrograms.core.definitions.FeatureDistances;
+import multidendrograms.core.definitions.MetricType;
+import multidendrograms.core.definitions.StorageType;
+import multidendrograms.data.DataFile;
+import multidendrograms.data.ExternalData;
 import multidendrograms.initial.LogManager.LogType;
 import multidendrograms.utils.VersionNumber;
+import multidendrograms.direct.Checkpoint;
 import multidendrograms.direct.DirectClustering;
+import multidendrograms.direct.ParameterSweep;
 import multidendrograms.errors.MethodError;
 import multidendrograms.forms.PrincipalDesk;
 import multidendrograms.forms.children.UpgradeBox;
@@ -87,12 +97,28 @@ public class Main {
 	public static void main(final String[] args) throws Exception {
 		Level logLevel = Level.WARNING;
 		String fileName = "";
+		String binaryFileName = "";
+		boolean isConvert = false;
 		ProximityType proximityType = ProximityType.DISTANCE;
 		int precision = DirectClustering.AUTO_PRECISION;
 		MethodType methodType = MethodType.ARITHMETIC_LINKAGE;
 		double methodParameter = 0.0;
 		boolean isWeighted = false;
 		OriginType originType = OriginType.UNIFORM_ORIGIN;
+		EngineType engineType = EngineType.VARIABLE_GROUP;
+		int numThreads = 1;
+		StorageType storageType = StorageType.DOUBLE;
+		MetricType metricType = null;
+		long cacheBytes = FeatureDistances.DEFAULT_CACHE_BYTES;
+		EvictionType evictionType = EvictionType.LRU;
+		String sweepValues = null;
+		double[] sweepParameters = null;
+		String checkpointName = null;
+		long checkpointMinutes = Checkpoint.DEFAULT_MINUTES;
+		String resumeName = null;
+		int numClusters = 1;
+		double cutoff = Double.NaN;
+		double[] cutHeights = null;
 
 		int i = 0;
 		while (i < args.length) {
@@ -131,6 +157,208 @@ public class Main {
 					showSyntax();
 					return;
 				}
+			} else if (arg.equals("-ENGINE")) {
+				try {
+					i++;
+					arg = args[i].toUpperCase();
+					if      (arg.equals("VG") || arg.equals("VARIABLE_GROUP"))
+						engineType = EngineType.VARIABLE_GROUP;
+					else if (arg.equals("NNC") || arg.equals("NEAREST_NEIGHBOR_CHAIN"))
+						engineType = EngineType.NEAREST_NEIGHBOR_CHAIN;
+					else if (arg.equals("MST") || arg.equals("MINIMUM_SPANNING_TREE"))
+						engineType = EngineType.MINIMUM_SPANNING_TREE;
+					else if (arg.equals("CS") || arg.equals("CENTROID_SEARCH"))
+						engineType = EngineType.CENTROID_SEARCH;
+					else if (arg.equals("PQ") || arg.equals("PRIORITY_QUEUE"))
+						engineType = EngineType.PRIORITY_QUEUE;
+					else {
+						System.out.println("Error: unknown engine '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-THREADS")) {
+				try {
+					i++;
+					numThreads = Integer.parseInt(args[i]);
+					if (numThreads < 1) {
+						System.out.println("Error: wrong number of threads '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-STORAGE")) {
+				try {
+					i++;
+					arg = args[i].toUpperCase();
+					if      (arg.equals("DOUBLE"))
+						storageType = StorageType.DOUBLE;
+					else if (arg.equals("FLOAT"))
+						storageType = StorageType.FLOAT;
+					else if (arg.equals("MAPPED"))
+						storageType = StorageType.MAPPED;
+					else if (arg.equals("SPARSE"))
+						storageType = StorageType.SPARSE;
+					else if (arg.equals("LAZY"))
+						storageType = StorageType.LAZY;
+					else {
+						System.out.println("Error: unknown storage '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-METRIC")) {
+				try {
+					i++;
+					arg = args[i].toUpperCase();
+					if      (arg.equals("EUCLIDEAN"))
+						metricType = MetricType.EUCLIDEAN;
+					else if (arg.equals("SQEUCLIDEAN") || arg.equals("SQUARED_EUCLIDEAN"))
+						metricType = MetricType.SQUARED_EUCLIDEAN;
+					else if (arg.equals("MANHATTAN"))
+						metricType = MetricType.MANHATTAN;
+					else if (arg.equals("COSINE"))
+						metricType = MetricType.COSINE;
+					else if (arg.equals("CORRELATION"))
+						metricType = MetricType.CORRELATION;
+					else {
+						System.out.println("Error: unknown metric '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-CACHE")) {
+				try {
+					i++;
+					long cacheMegabytes = Long.parseLong(args[i]);
+					if (cacheMegabytes < 1) {
+						System.out.println("Error: wrong cache size '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+					cacheBytes = cacheMegabytes << 20;
+					if ((i + 1 < args.length) && !args[i + 1].startsWith("-")) {
+						i++;
+						arg = args[i].toUpperCase();
+						if      (arg.equals("LRU"))
+							evictionType = EvictionType.LRU;
+						else if (arg.equals("FIFO"))
+							evictionType = EvictionType.FIFO;
+						else {
+							System.out.println("Error: unknown eviction '" + args[i] + "'");
+							showSyntax();
+							return;
+						}
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-SWEEP")) {
+				try {
+					i++;
+					sweepValues = args[i];
+					sweepParameters = ParameterSweep.parseParameters(sweepValues);
+					if (sweepParameters.length == 0) {
+						System.out.println("Error: wrong method parameters '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-CLUSTERS")) {
+				try {
+					i++;
+					numClusters = Integer.parseInt(args[i]);
+					if (numClusters < 1) {
+						System.out.println("Error: wrong number of clusters '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-CUTOFF")) {
+				try {
+					i++;
+					cutoff = Double.parseDouble(args[i]);
+					if (Double.isNaN(cutoff)) {
+						System.out.println("Error: wrong cutoff '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-CUT")) {
+				try {
+					i++;
+					cutHeights = ParameterSweep.parseParameters(args[i]);
+					if (cutHeights.length == 0) {
+						System.out.println("Error: wrong cut heights '" + args[i] + "'");
+						showSyntax();
+						return;
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-CHECKPOINT")) {
+				try {
+					i++;
+					checkpointName = args[i];
+					if ((i + 1 < args.length) && !args[i + 1].startsWith("-")) {
+						i++;
+						checkpointMinutes = Long.parseLong(args[i]);
+						if (checkpointMinutes < 0) {
+							System.out.println("Error: wrong checkpoint interval '" + args[i] + "'");
+							showSyntax();
+							return;
+						}
+					}
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-RESUME")) {
+				try {
+					i++;
+					resumeName = args[i];
+					isDirect = true;
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
+			} else if (arg.equals("-CONVERT")) {
+				try {
+					// data file name
+					i++;
+					fileName = args[i];
+					// binary file name
+					i++;
+					binaryFileName = args[i];
+					isConvert = true;
+					isDirect = true;
+				} catch (Exception e) {
+					showSyntax();
+					return;
+				}
 			} else if (arg.equals("-DIRECT")) {
 				try {
 					// data file name
@@ -259,7 +487,51 @@ public class Main {
 			checkVersion.start();
 		}
 
-		if (isDirect) {
+		// lazy storages calculate the distances between feature vectors
+		if (storageType.equals(StorageType.LAZY) && (metricType == null) && 
+				(resumeName == null)) {
+			System.out.println("Error: -storage LAZY only available with -metric");
+			showSyntax();
+			return;
+		}
+		FeatureDistances.setCache(cacheBytes, evictionType);
+
+		if (isConvert) {
+			ForkJoinPool pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
+			try {
+				ExternalData externalData = DirectClustering.loadData(
+						new DataFile(fileName), metricType, storageType, pool);
+				externalData.saveAsBinary(binaryFileName);
+				System.out.println("Data file        : " + fileName);
+				System.out.println("Binary file      : " + binaryFileName);
+				System.out.println("Elements         : " + externalData.getNumberOfElements());
+				System.out.println("Precision        : " + externalData.getPrecision());
+				System.out.println("---");
+			} catch (Exception e) {
+				System.out.println("Parameters: -convert " + fileName + " " + binaryFileName);
+				LogManager.LOG.severe(e.getMessage());
+			} finally {
+				if (pool != null) {
+					pool.shutdown();
+				}
+			}
+		} else if (resumeName != null) {
+			try {
+				DirectClustering dirClus = new DirectClustering(
+				    new Checkpoint(resumeName, checkpointMinutes), numThreads, numClusters, cutoff);
+				saveDirect(dirClus, (numClusters > 1) || !Double.isNaN(cutoff), cutHeights);
+			} catch (Exception e) {
+				System.out.println("Parameters: -resume " + resumeName);
+				LogManager.LOG.severe(e.getMessage());
+			}
+		} else if (isDirect) {
+			// features only give distances
+			if ((metricType != null) && (proximityType == ProximityType.SIMILARITY)) {
+				System.out.println("Error: -metric only available for DISTANCE");
+				showSyntax();
+				return;
+			}
+
 			// check Centroid and Ward only for Distance, not for Similarity
 			if ((proximityType == ProximityType.SIMILARITY) &&
 			    ((methodType == MethodType.CENTROID) || (methodType == MethodType.WARD))) {
@@ -268,15 +540,53 @@ public class Main {
 				return;
 			}
 
+			if (sweepParameters != null) {
+				if (!methodType.equals(MethodType.VERSATILE_LINKAGE) &&
+						!methodType.equals(MethodType.BETA_FLEXIBLE)) {
+					System.out.println("Error: -sweep only available for VL and BF");
+					showSyntax();
+					return;
+				}
+				if (methodType.equals(MethodType.BETA_FLEXIBLE)) {
+					for (double beta : sweepParameters) {
+						if ((beta < -1.0) || (+1.0 < beta)) {
+							System.out.println(Language.getLabel(68));
+							showSyntax();
+							return;
+						}
+					}
+				}
+				ForkJoinPool pool = (numThreads > 1) ? new ForkJoinPool(numThreads) : null;
+				try {
+					DataFile dataFile = new DataFile(fileName);
+					ExternalData externalData = DirectClustering.loadData(dataFile, metricType,
+					    storageType, pool);
+					ParameterSweep sweep = new ParameterSweep(dataFile, externalData,
+					    proximityType, precision, methodType, sweepParameters, isWeighted,
+					    originType, BandHeight.BAND_BOTTOM, engineType);
+					sweep.printParameters();
+					sweep.run(pool);
+					sweep.printSummary();
+					sweep.saveSummary();
+				} catch (Exception e) {
+					System.out.println("Parameters: -sweep " + sweepValues + " -direct "
+					    + fileName + " " + proximityType + " " + methodType);
+					LogManager.LOG.severe(e.getMessage());
+				} finally {
+					if (pool != null) {
+						pool.shutdown();
+					}
+				}
+				return;
+			}
+
 			try {
 				DirectClustering dirClus = new DirectClustering(fileName, proximityType, precision,
-				    methodType, methodParameter, isWeighted, originType, BandHeight.BAND_BOTTOM);
-				dirClus.printMeasures();
-				dirClus.saveMeasures();
-				dirClus.saveUltrametric();
-				dirClus.saveAsTxt();
-				dirClus.saveAsNewick();
-				dirClus.saveAsJson();
+				    methodType, methodParameter, isWeighted, originType, BandHeight.BAND_BOTTOM,
+				    engineType, numThreads, storageType, metricType,
+				    (checkpointName == null) ? null : new Checkpoint(checkpointName, checkpointMinutes),
+				    numClusters, cutoff);
+				saveDirect(dirClus, (numClusters > 1) || !Double.isNaN(cutoff), cutHeights);
 			} catch (Exception e) {
 				String parameters = "Parameters: -direct " + fileName + " " + proximityType;
 				if (precision != DirectClustering.AUTO_PRECISION) {
@@ -304,6 +614,28 @@ public class Main {
 		}
 	}
 
+	// A forest, left by early termination, is only saved as text tree and clusters
+	private static void saveDirect(DirectClustering dirClus, boolean isTerminatedEarly,
+			double[] cutHeights) {
+		if (dirClus.isForest()) {
+			System.out.println("Clusters found   : " + dirClus.getRoots().length);
+			System.out.println("---");
+		} else {
+			dirClus.printMeasures();
+			dirClus.saveMeasures();
+			dirClus.saveUltrametric();
+			dirClus.saveAsNewick();
+			dirClus.saveAsJson();
+		}
+		dirClus.saveAsTxt();
+		if (isTerminatedEarly) {
+			dirClus.saveClusters();
+		}
+		if (cutHeights != null) {
+			dirClus.saveCuts(cutHeights);
+		}
+	}
+
 	private static void showSyntax() {
 		System.out.println("Usage: java -jar multidendrograms.jar [ options ]");
 		System.out.println("");
@@ -316,9 +648,102 @@ public class Main {
 		System.out.println("                      OFF, SEVERE, WARNING, INFO, CONFIG, FINE, FINER, FINEST, ALL");
 		System.out.println("                      Default value for LEVEL: WARNING");
 		System.out.println("");
+		System.out.println("    -engine  ENGINE");
+		System.out.println("        Sets the agglomeration engine of the direct calculation");
+		System.out.println("        ENGINE    : agglomeration engine, one of");
+		System.out.println("                      VG, VARIABLE_GROUP");
+		System.out.println("                      NNC, NEAREST_NEIGHBOR_CHAIN");
+		System.out.println("                      MST, MINIMUM_SPANNING_TREE");
+		System.out.println("                      CS, CENTROID_SEARCH");
+		System.out.println("                      PQ, PRIORITY_QUEUE");
+		System.out.println("                      Default value for ENGINE: VARIABLE_GROUP");
+		System.out.println("                      NEAREST_NEIGHBOR_CHAIN only available for SL, CL, VL, AL, GL, HL and WD");
+		System.out.println("                      MINIMUM_SPANNING_TREE only available for SL with distances and CL with similarities");
+		System.out.println("                      CENTROID_SEARCH only available for CD and WD with -metric EUCLIDEAN, which are");
+		System.out.println("                      calculated from the centroids of the clusters without the proximities");
+		System.out.println("                      PRIORITY_QUEUE available for all the methods, it keeps the roots queued by");
+		System.out.println("                      their nearest roots, useful for CD and BF which do not support NNC");
+		System.out.println("");
+		System.out.println("    -threads  NUM_THREADS");
+		System.out.println("        Sets the number of threads of the direct calculation");
+		System.out.println("        NUM_THREADS : number of threads used to calculate the proximities of new superclusters,");
+		System.out.println("                      to read large list files and to calculate the distances of -metric");
+		System.out.println("                      Default value for NUM_THREADS: 1");
+		System.out.println("");
+		System.out.println("    -storage  STORAGE");
+		System.out.println("        Sets the storage of the proximities in the direct calculation");
+		System.out.println("        STORAGE   : storage of the proximities, one of");
+		System.out.println("                      DOUBLE, FLOAT, MAPPED, SPARSE, LAZY");
+		System.out.println("                      Default value for STORAGE: DOUBLE");
+		System.out.println("                      FLOAT halves the memory, only for data with few significant digits");
+		System.out.println("                      MAPPED keeps the proximities in memory-mapped temporary files");
+		System.out.println("                      VL, AL, GL and HL keep a second matrix of powered proximities, except with");
+		System.out.println("                      FLOAT and MAPPED");
+		System.out.println("                      SPARSE only stores the proximities given in list files, the other ones take");
+		System.out.println("                      the missing value, and SL and CL are calculated without storing them");
+		System.out.println("                      LAZY only keeps the feature vectors of -metric and recalculates their");
+		System.out.println("                      distances in a cache of tiles, while the proximities updated by the methods");
+		System.out.println("                      are memory-mapped. SL with the MST engine and CD and WD with the CS engine");
+		System.out.println("                      do not update them");
+		System.out.println("");
+		System.out.println("    -cache  MEGABYTES  [ EVICTION ]");
+		System.out.println("        Sets the size of the cache of distances of -storage LAZY");
+		System.out.println("        MEGABYTES : size of the cache, default value: " + (FeatureDistances.DEFAULT_CACHE_BYTES >> 20));
+		System.out.println("        EVICTION  : tiles evicted when the cache is full, one of");
+		System.out.println("                      LRU, least recently used");
+		System.out.println("                      FIFO, first calculated");
+		System.out.println("                      Default value for EVICTION: LRU");
+		System.out.println("");
+		System.out.println("    -metric  METRIC");
+		System.out.println("        Reads the data file as a table of feature vectors, with the label of each element in the");
+		System.out.println("        first column, and calculates their distances in the direct calculation and -convert");
+		System.out.println("        METRIC    : distance between feature vectors, one of");
+		System.out.println("                      EUCLIDEAN");
+		System.out.println("                      SQEUCLIDEAN, SQUARED_EUCLIDEAN");
+		System.out.println("                      MANHATTAN");
+		System.out.println("                      COSINE, one minus the cosine similarity");
+		System.out.println("                      CORRELATION, one minus the Pearson correlation");
+		System.out.println("");
+		System.out.println("    -sweep  VALUES");
+		System.out.println("        Direct calculation for several values of the method parameter of VL and BF, reading the data once");
+		System.out.println("        VALUES    : comma separated list of values and ranges FROM:TO:STEP, replacing METHOD_P");
+		System.out.println("                      Clusterings run concurrently with NUM_THREADS threads, and their measures are");
+		System.out.println("                      summarized in a -sweep.txt file");
+		System.out.println("");
+		System.out.println("    -clusters  NUM_CLUSTERS");
+		System.out.println("        Stops the direct calculation when NUM_CLUSTERS clusters remain, or fewer if tied");
+		System.out.println("        NUM_CLUSTERS : number of clusters, saved as a text forest and a -clusters.txt file with the");
+		System.out.println("                       cluster of each element. Measures are only saved for a single tree");
+		System.out.println("                       The NNC engine is replaced by VG, which merges the clusters in order");
+		System.out.println("");
+		System.out.println("    -cutoff  HEIGHT");
+		System.out.println("        Stops the direct calculation before merging clusters beyond HEIGHT, saved as with -clusters");
+		System.out.println("        HEIGHT       : maximum distance or minimum similarity of the merged clusters");
+		System.out.println("");
+		System.out.println("    -cut  HEIGHTS");
+		System.out.println("        Saves the flat clusters of the direct calculation at each height, in -cutHEIGHT.txt files");
+		System.out.println("        with the cluster of each element");
+		System.out.println("        HEIGHTS      : comma separated list of heights and ranges FROM:TO:STEP");
+		System.out.println("");
+		System.out.println("    -checkpoint  CHECKPOINT_FILE  [ MINUTES ]");
+		System.out.println("        Periodically saves the state of the direct calculation, to be resumed if it stops");
+		System.out.println("        CHECKPOINT_FILE : name of the checkpoint file, deleted when the calculation finishes");
+		System.out.println("        MINUTES         : minutes between checkpoints, default value: " + Checkpoint.DEFAULT_MINUTES);
+		System.out.println("                          Interrupting the program also saves a checkpoint. Not available for");
+		System.out.println("                          the MST and CS engines");
+		System.out.println("");
+		System.out.println("    -resume  CHECKPOINT_FILE");
+		System.out.println("        Resumes the direct calculation saved in a checkpoint file, with the same data file and");
+		System.out.println("        parameters, and keeps saving checkpoints in it every MINUTES of -checkpoint");
+		System.out.println("");
+		System.out.println("    -convert  FILE_NAME  BINARY_FILE_NAME");
+		System.out.println("        Converts a data file into a binary file, loaded faster by -direct and the graphic interface");
+		System.out.println("        FILE_NAME        : name of the data file");
+		System.out.println("        BINARY_FILE_NAME : name of the binary file, with single precision values for -storage FLOAT");
+		System.out.println("");
 		System.out.println("    -direct  FILE_NAME  PROX_TYPE  [ PRECISION ]  METHOD  [ METHOD_P ]  [ WEIGHTED ]  [ ORIGIN ]");
 		System.out.println("        Direct calculation of the multidendrogram without graphic interface");
-		System.out.println("        FILE_NAME : name of the data file");
+		System.out.println("        FILE_NAME : name of the data file, text or binary");
 		System.out.println("        PROX_TYPE : proximity type, one of");
 		System.out.println("                      D, DIST, DISTANCE, DISTANCES");
 		System.out.println("                      S, SIM, SIMILARITY, SIMILARITIES");
@@ -368,6 +793,21 @@ public class Main {
 		System.out.println("    java -jar multidendrograms.jar -direct data.txt D 3 VL -3.5 W");
 		System.out.println("    java -jar multidendrograms.jar -direct data.txt D CL UO");
 		System.out.println("    java -jar multidendrograms.jar -direct data.txt D 3 CL NUO");
+		System.out.println("    java -jar multidendrograms.jar -engine NNC -direct data.txt D WD");
+		System.out.println("    java -jar multidendrograms.jar -threads 8 -direct data.txt D 3 VL -3.5");
+		System.out.println("    java -jar multidendrograms.jar -storage FLOAT -direct data.txt D 2 AL");
+		System.out.println("    java -jar multidendrograms.jar -threads 4 -sweep -3.5:3.5:0.5 -direct data.txt D 3 VL");
+		System.out.println("    java -jar multidendrograms.jar -clusters 10 -direct data.txt D 3 CL");
+		System.out.println("    java -jar multidendrograms.jar -engine MST -cutoff 2.5 -direct data.txt D SL");
+		System.out.println("    java -jar multidendrograms.jar -cut 0.5:2.5:0.5 -direct data.txt D 3 AL");
+		System.out.println("    java -jar multidendrograms.jar -engine NNC -checkpoint data.ckp 30 -direct data.txt D AL");
+		System.out.println("    java -jar multidendrograms.jar -resume data.ckp");
+		System.out.println("    java -jar multidendrograms.jar -sweep -0.5,0,0.25 -direct data.txt D 3 BF W");
+		System.out.println("    java -jar multidendrograms.jar -threads 8 -metric EUCLIDEAN -direct features.txt D WD");
+		System.out.println("    java -jar multidendrograms.jar -storage LAZY -cache 512 -metric COSINE -engine MST -direct features.txt D SL");
+		System.out.println("    java -jar multidendrograms.jar -storage LAZY -metric EUCLIDEAN -engine CS -direct features.txt D WD");
+		System.out.println("    java -jar multidendrograms.jar -convert data.txt data.bin");
+		System.out.println("    java -jar multidendrograms.jar -direct data.bin D 3 CL");
 		System.out.println("");
 	}
 
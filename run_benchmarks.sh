@@ -0,0 +1,2 @@
+# Usage: sh run_benchmarks.sh [ JMH options ] [ benchmark regexp ]
+java -cp ".:benchmarks/classes:benchmarks/lib/*" org.openjdk.jmh.Main -rf json -rff benchmarks/results.json "$@"